@@ -1,33 +1,76 @@
 package com.mclaunch.launcher;
 
 import java.io.*;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages Minecraft assets and libraries
  * Handles downloading and organizing game resources
  */
 public class AssetManager {
-    private static final String ASSETS_DIR = "/data/storage/el2/base/minecraft/assets";
-    private static final String LIBRARIES_DIR = "/data/storage/el2/base/minecraft/libraries";
-    private static final String ASSETS_BASE_URL = "https://resources.download.minecraft.net/";
+    private static final String MINECRAFT_DIR = "/data/storage/el2/base/minecraft";
+    static final String RESOURCES_URL = "https://resources.download.minecraft.net/";
+    private static final int MAX_CONCURRENT_DOWNLOADS = 32;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 250;
     
-    private Map<String, AssetInfo> assetIndex;
+    private final String assetsDir;
+    private final String librariesDir;
+    private final String versionsDir;
+    private final String resourcesUrl;
+    private volatile boolean directoriesReady;
+    private final LazyComponent<StorageLedger> storageLedger;
+    private volatile DownloadListener downloadListener;
     
     public AssetManager() {
-        this.assetIndex = new HashMap<>();
-        initializeDirectories();
+        // The ledger replays its journal on first use, not at construction
+        this(MINECRAFT_DIR, RESOURCES_URL, new LazyComponent<>("StorageLedger", StorageLedger::new));
+    }
+    
+    public AssetManager(StorageLedger storageLedger) {
+        this(MINECRAFT_DIR, RESOURCES_URL, storageLedger);
+    }
+    
+    /**
+     * Asset manager over another game directory and asset object endpoint
+     */
+    public AssetManager(String minecraftDir, String resourcesUrl, StorageLedger storageLedger) {
+        this(minecraftDir, resourcesUrl, new LazyComponent<>("StorageLedger", () -> storageLedger));
     }
     
+    AssetManager(String minecraftDir, String resourcesUrl, LazyComponent<StorageLedger> storageLedger) {
+        this.assetsDir = minecraftDir + "/assets";
+        this.librariesDir = minecraftDir + "/libraries";
+        this.versionsDir = minecraftDir + "/versions";
+        this.resourcesUrl = resourcesUrl.endsWith("/") ? resourcesUrl : resourcesUrl + "/";
+        this.storageLedger = storageLedger;
+    }
+    
+    /**
+     * Create asset directories on first write instead of at construction
+     */
     private void initializeDirectories() {
+        if (directoriesReady) {
+            return;
+        }
         try {
-            Files.createDirectories(Paths.get(ASSETS_DIR));
-            Files.createDirectories(Paths.get(LIBRARIES_DIR));
+            Files.createDirectories(Paths.get(assetsDir));
+            Files.createDirectories(Paths.get(librariesDir));
+            directoriesReady = true;
         } catch (IOException e) {
             System.err.println("Failed to create asset directories: " + e.getMessage());
         }
@@ -37,77 +80,334 @@ public class AssetManager {
      * Download assets for a specific version
      */
     public boolean downloadAssets(String version) {
+        VersionMetadata metadata = loadMetadata(version);
+        return metadata != null && downloadAssets(metadata);
+    }
+    
+    /**
+     * Download the asset index and every object it lists that is not
+     * already present
+     */
+    public boolean downloadAssets(VersionMetadata metadata) {
+        return downloadAssets(metadata, new ProgressTracker()).join();
+    }
+    
+    /**
+     * Asynchronous downloadAssets with progress and cancellation
+     */
+    public LauncherTask<Boolean> downloadAssetsAsync(String version) {
+        return LauncherTask.start(progress -> CompletableFuture
+                .supplyAsync(() -> loadMetadata(version), LauncherHttpClient.shared().getExecutor())
+                .thenCompose(metadata -> metadata != null
+                        ? downloadAssets(metadata, progress)
+                        : CompletableFuture.completedFuture(false)));
+    }
+    
+    /**
+     * Asset download reporting into an existing tracker
+     */
+    CompletableFuture<Boolean> downloadAssets(VersionMetadata metadata, ProgressTracker progress) {
+        System.out.println("Downloading assets for version " + metadata.getId() + "...");
+        initializeDirectories();
+        progress.setPhase("assets");
+        
+        String indexId = metadata.getAssetIndexId();
+        if (indexId == null) {
+            return CompletableFuture.completedFuture(true);
+        }
+        System.out.println("Downloading asset index " + indexId);
+        Path index = Paths.get(assetsDir, "indexes", indexId + ".json");
+        String indexSha1 = metadata.getAssetIndexSha1();
+        Executor io = LauncherHttpClient.shared().getExecutor();
+        
+        // Download asset index, then individual assets
+        return CompletableFuture.supplyAsync(() -> isValid(index, indexSha1), io)
+                .thenCompose(valid -> {
+                    if (valid) {
+                        return CompletableFuture.completedFuture(true);
+                    }
+                    progress.addTotal(1, 0);
+                    return metadata.getAssetIndexUrl() != null
+                            ? downloadFileAsync(metadata.getAssetIndexUrl(), index, indexSha1, progress)
+                            : CompletableFuture.completedFuture(false);
+                })
+                .thenApplyAsync(ok -> ok ? readAssetIndex(index) : null, io)
+                .thenCompose(assetIndex -> assetIndex != null
+                        ? downloadAssetFiles(assetIndex, progress)
+                        : CompletableFuture.completedFuture(false))
+                .exceptionally(error -> {
+                    System.err.println("Failed to download assets: " + error.getMessage());
+                    return false;
+                });
+    }
+    
+    private static boolean isValid(Path file, String sha1) {
         try {
-            System.out.println("Downloading assets for version " + version + "...");
-            
-            // Download asset index
-            if (!downloadAssetIndex(version)) {
-                return false;
-            }
-            
-            // Download individual assets
-            return downloadAssetFiles();
-            
-        } catch (Exception e) {
-            System.err.println("Failed to download assets: " + e.getMessage());
+            return Files.exists(file) && (sha1 == null || sha1.equalsIgnoreCase(FileHasher.sha1(file)));
+        } catch (IOException e) {
             return false;
         }
     }
     
     /**
-     * Download asset index file
+     * Objects of an asset index file keyed by hash, or null if unreadable
      */
-    private boolean downloadAssetIndex(String version) {
+    private Map<String, AssetInfo> readAssetIndex(Path index) {
         try {
-            // This would normally download the asset index JSON
-            System.out.println("Downloading asset index for " + version);
-            
-            // Mock implementation - in reality you'd parse the JSON
-            // and populate the assetIndex map
-            return true;
+            Map<String, Object> objects = JsonParser.getObject(
+                    JsonParser.parseObject(new String(Files.readAllBytes(index), StandardCharsets.UTF_8)), "objects");
+            Map<String, AssetInfo> assetIndex = new HashMap<>();
+            if (objects == null) {
+                return assetIndex;
+            }
+            for (Object value : objects.values()) {
+                if (!(value instanceof Map)) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> object = (Map<String, Object>) value;
+                String hash = JsonParser.getString(object, "hash");
+                if (hash == null || hash.length() < 2) {
+                    continue;
+                }
+                AssetInfo info = new AssetInfo();
+                info.setHash(hash);
+                info.setSize(JsonParser.getLong(object, "size", -1));
+                info.setUrl(getAssetUrl(hash));
+                assetIndex.put(hash, info);
+            }
+            return assetIndex;
         } catch (Exception e) {
-            System.err.println("Failed to download asset index: " + e.getMessage());
-            return false;
+            System.err.println("Failed to read asset index: " + e.getMessage());
+            return null;
         }
     }
     
     /**
      * Download individual asset files
      */
-    private boolean downloadAssetFiles() {
-        try {
-            // Mock implementation - would iterate through assetIndex
-            // and download each asset file
-            System.out.println("Downloading asset files...");
-            return true;
-        } catch (Exception e) {
-            System.err.println("Failed to download asset files: " + e.getMessage());
-            return false;
+    private CompletableFuture<Boolean> downloadAssetFiles(Map<String, AssetInfo> assetIndex,
+                                                          ProgressTracker progress) {
+        List<Download> downloads = new ArrayList<>(assetIndex.size());
+        for (AssetInfo info : assetIndex.values()) {
+            downloads.add(new Download(info.getUrl(), getObjectPath(info.getHash()), info.getHash(), info.getSize()));
         }
+        System.out.println("Downloading asset files...");
+        return downloadAll(downloads, progress);
     }
     
     /**
      * Download libraries for a version
      */
     public boolean downloadLibraries(String version) {
+        VersionMetadata metadata = loadMetadata(version);
+        return metadata != null && downloadLibraries(metadata);
+    }
+    
+    /**
+     * Download every library of the (merged) version metadata that is not
+     * already present
+     */
+    public boolean downloadLibraries(VersionMetadata metadata) {
+        return downloadLibraries(metadata, new ProgressTracker()).join();
+    }
+    
+    /**
+     * Asynchronous downloadLibraries with progress and cancellation
+     */
+    public LauncherTask<Boolean> downloadLibrariesAsync(String version) {
+        return LauncherTask.start(progress -> CompletableFuture
+                .supplyAsync(() -> loadMetadata(version), LauncherHttpClient.shared().getExecutor())
+                .thenCompose(metadata -> metadata != null
+                        ? downloadLibraries(metadata, progress)
+                        : CompletableFuture.completedFuture(false)));
+    }
+    
+    /**
+     * Library download reporting into an existing tracker
+     */
+    CompletableFuture<Boolean> downloadLibraries(VersionMetadata metadata, ProgressTracker progress) {
+        System.out.println("Downloading libraries for version " + metadata.getId() + "...");
+        initializeDirectories();
+        progress.setPhase("libraries");
+        
+        List<Download> downloads = new ArrayList<>();
+        for (VersionMetadata.LibraryEntry library : metadata.getLibraries()) {
+            if (library.getPath() != null && library.getUrl() != null) {
+                downloads.add(new Download(library.getUrl(), Paths.get(librariesDir, library.getPath()),
+                        library.getSha1(), library.getSize()));
+            }
+        }
+        return downloadAll(downloads, progress);
+    }
+    
+    /**
+     * Fetch files with a bounded number of requests in flight; files already
+     * present with the expected size are skipped. Each of the workers starts
+     * its next file when the previous one finishes, so no thread waits.
+     */
+    private CompletableFuture<Boolean> downloadAll(List<Download> downloads, ProgressTracker progress) {
+        List<Download> pending = new ArrayList<>(downloads.size());
+        Set<Path> targets = new HashSet<>();
+        long bytes = 0;
+        for (Download download : downloads) {
+            if (targets.add(download.target) && !isPresent(download.target, download.size)) {
+                pending.add(download);
+                bytes += Math.max(0, download.size);
+            }
+        }
+        progress.addTotal(pending.size(), bytes);
+        
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean ok = new AtomicBoolean(true);
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(MAX_CONCURRENT_DOWNLOADS, pending.size()); i++) {
+            workers.add(downloadNext(pending, next, ok, progress));
+        }
+        return CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> ok.get() && !progress.isCancelled());
+    }
+    
+    private CompletableFuture<Void> downloadNext(List<Download> pending, AtomicInteger next, AtomicBoolean ok,
+                                                 ProgressTracker progress) {
+        int index = next.getAndIncrement();
+        if (index >= pending.size() || progress.isCancelled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Download download = pending.get(index);
+        return downloadFileAsync(download.url, download.target, download.sha1, progress)
+                .thenComposeAsync(success -> {
+                    if (!success) {
+                        ok.set(false);
+                    }
+                    return downloadNext(pending, next, ok, progress);
+                }, LauncherHttpClient.shared().getExecutor());
+    }
+    
+    private static boolean isPresent(Path target, long size) {
         try {
-            System.out.println("Downloading libraries for version " + version + "...");
-            
-            // This would parse the version JSON and download required libraries
-            // Mock implementation for now
-            return true;
-        } catch (Exception e) {
-            System.err.println("Failed to download libraries: " + e.getMessage());
+            return Files.isRegularFile(target) && (size < 0 || Files.size(target) == size);
+        } catch (IOException e) {
             return false;
         }
     }
     
+    private VersionMetadata loadMetadata(String version) {
+        try {
+            return new VersionMetadataCache(versionsDir).load(version);
+        } catch (IOException e) {
+            System.err.println("Failed to load metadata for " + version + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Download URL of an asset object
+     */
+    public String getAssetUrl(String hash) {
+        return resourcesUrl + hash.substring(0, 2) + "/" + hash;
+    }
+    
+    /**
+     * Download a single file, verifying its SHA-1 before moving it into place
+     */
+    public boolean downloadFile(String url, Path target, String expectedSha1) {
+        return downloadFileAsync(url, target, expectedSha1).join();
+    }
+    
+    /**
+     * Asynchronous form of downloadFile over the shared HTTP client; the
+     * future completes with false instead of failing. Transient failures
+     * (connection errors, 5xx, checksum mismatch from a cut-off body) are
+     * retried with a short backoff.
+     */
+    public CompletableFuture<Boolean> downloadFileAsync(String url, Path target, String expectedSha1) {
+        return downloadFileAsync(url, target, expectedSha1, null);
+    }
+    
+    /**
+     * downloadFileAsync reporting bytes and the finished file to a tracker,
+     * which can also cancel the transfer
+     */
+    CompletableFuture<Boolean> downloadFileAsync(String url, Path target, String expectedSha1,
+                                                 ProgressTracker progress) {
+        initializeDirectories();
+        return attemptDownload(url, target, expectedSha1, progress, 1, System.nanoTime());
+    }
+    
+    private CompletableFuture<Boolean> attemptDownload(String url, Path target, String expectedSha1,
+                                                       ProgressTracker progress, int attempt, long startNanos) {
+        if (progress != null && progress.isCancelled()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        AttemptListener listener = new AttemptListener(progress);
+        LauncherHttpClient client = LauncherHttpClient.shared();
+        return client.download(client.request(url).build(), target, expectedSha1, listener)
+                .handle((path, error) -> {
+                    if (error == null) {
+                        storageLedger.get().recordWrite(path);
+                        if (progress != null) {
+                            progress.onFileDone();
+                        }
+                        notifyListener(url, path, startNanos, attempt, true);
+                        return CompletableFuture.completedFuture(true);
+                    }
+                    listener.discard();
+                    if (progress != null && progress.isCancelled()) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    IOException cause = LauncherHttpClient.unwrap(error);
+                    if (attempt < MAX_ATTEMPTS && isRetryable(cause)) {
+                        return CompletableFuture.supplyAsync(() -> null,
+                                CompletableFuture.delayedExecutor(RETRY_BACKOFF_MS * attempt, TimeUnit.MILLISECONDS))
+                                .thenCompose(ignored -> attemptDownload(url, target, expectedSha1, progress,
+                                        attempt + 1, startNanos));
+                    }
+                    System.err.println("Failed to download " + url + ": " + cause.getMessage());
+                    notifyListener(url, null, startNanos, attempt, false);
+                    return CompletableFuture.completedFuture(false);
+                })
+                .thenCompose(result -> result);
+    }
+    
+    private static boolean isRetryable(IOException error) {
+        if (error instanceof LauncherHttpClient.HttpStatusException) {
+            int status = ((LauncherHttpClient.HttpStatusException) error).getStatusCode();
+            return status >= 500 || status == 408 || status == 429;
+        }
+        return true;
+    }
+    
+    private void notifyListener(String url, Path path, long startNanos, int attempts, boolean success) {
+        DownloadListener listener = downloadListener;
+        if (listener == null) {
+            return;
+        }
+        long bytes = 0;
+        if (path != null) {
+            try {
+                bytes = Files.size(path);
+            } catch (IOException ignored) {
+                // Reported as zero bytes
+            }
+        }
+        listener.onDownloadFinished(url, bytes, System.nanoTime() - startNanos, attempts, success);
+    }
+    
+    /**
+     * Receive a callback for every finished file download, e.g. for progress
+     * or benchmarks; called from transfer threads
+     */
+    public void setDownloadListener(DownloadListener downloadListener) {
+        this.downloadListener = downloadListener;
+    }
+    
     /**
      * Check if assets are available for a version
      */
     public boolean areAssetsAvailable(String version) {
-        File assetsDir = new File(ASSETS_DIR, "indexes");
-        File indexFile = new File(assetsDir, version + ".json");
+        File indexDir = new File(assetsDir, "indexes");
+        File indexFile = new File(indexDir, version + ".json");
         return indexFile.exists();
     }
     
@@ -123,8 +423,61 @@ public class AssetManager {
      * Get total size of assets for a version
      */
     public long getAssetsSize(String version) {
-        // Mock implementation - would calculate total asset size
-        return 150 * 1024 * 1024; // 150 MB estimate
+        // Indexes are named after the asset index id (e.g. 17 for 1.20.4), which loader profiles inherit
+        VersionMetadata metadata = loadMetadata(version);
+        if (metadata == null || metadata.getAssetIndexId() == null) {
+            return 0;
+        }
+        Path index = Paths.get(assetsDir, "indexes", metadata.getAssetIndexId() + ".json");
+        if (!Files.exists(index)) {
+            return 0;
+        }
+        // Sizes come from the storage ledger; only the index itself is read
+        long total = Math.max(0, storageLedger.get().getSize(index));
+        try {
+            for (String hash : readIndexHashes(index)) {
+                total += Math.max(0, storageLedger.get().getSize(getObjectPath(hash)));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read asset index " + index + ": " + e.getMessage());
+        }
+        return total;
+    }
+    
+    /**
+     * Local path of an asset object
+     */
+    public Path getObjectPath(String hash) {
+        return Paths.get(assetsDir, "objects", hash.substring(0, 2), hash);
+    }
+    
+    /**
+     * Object hashes listed in an asset index file
+     */
+    public static List<String> readIndexHashes(Path index) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        Map<String, Object> objects = JsonParser.getObject(
+                JsonParser.parseObject(new String(Files.readAllBytes(index), StandardCharsets.UTF_8)), "objects");
+        if (objects == null) {
+            return hashes;
+        }
+        for (Object value : objects.values()) {
+            if (value instanceof Map) {
+                @SuppressWarnings("unchecked")
+                String hash = JsonParser.getString((Map<String, Object>) value, "hash");
+                if (hash != null && hash.length() >= 2) {
+                    hashes.add(hash);
+                }
+            }
+        }
+        return hashes;
+    }
+    
+    /**
+     * Byte accounting for everything this manager writes
+     */
+    public StorageLedger getStorageLedger() {
+        return storageLedger.get();
     }
     
     /**
@@ -139,6 +492,67 @@ public class AssetManager {
         }
     }
     
+    /**
+     * Callback for finished downloads
+     */
+    public interface DownloadListener {
+        void onDownloadFinished(String url, long bytes, long elapsedNanos, int attempts, boolean success);
+    }
+    
+    /**
+     * Forwards one transfer attempt to the tracker and can take its bytes
+     * back when the attempt fails
+     */
+    private static class AttemptListener implements LauncherHttpClient.ByteListener {
+        private final ProgressTracker progress;
+        private long bytes;
+        
+        AttemptListener(ProgressTracker progress) {
+            this.progress = progress;
+        }
+        
+        @Override
+        public void onBytes(int count) {
+            bytes += count;
+            if (progress != null) {
+                progress.onBytes(count);
+            }
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return progress != null && progress.isCancelled();
+        }
+        
+        @Override
+        public void onExchange(CompletableFuture<?> exchange) {
+            if (progress != null) {
+                progress.onExchange(exchange);
+            }
+        }
+        
+        void discard() {
+            if (progress != null && bytes > 0) {
+                progress.discardBytes(bytes);
+            }
+            bytes = 0;
+        }
+    }
+    
+    private static class Download {
+        final String url;
+        final Path target;
+        final String sha1;
+        final long size;
+        
+        Download(String url, Path target, String sha1, long size) {
+            this.url = url;
+            this.target = target;
+            this.sha1 = sha1;
+            this.size = size;
+        }
+    }
+    
     /**
      * Inner class for asset information
      */
@@ -0,0 +1,315 @@
+package com.mclaunch.launcher;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Replaces a long list of classpath jars with a single per-version jar
+ * MERGED copies every entry into one uncompressed (STORED) jar, so the game
+ * JVM opens one file and reads classes without inflating them. MANIFEST
+ * writes an empty jar whose Class-Path lists the originals, which only
+ * shortens the command line. Either jar is named after a hash of the input
+ * list, sizes and timestamps, so it is reused until the classpath changes.
+ * Resources that every jar contributes to, such as Log4j2Plugins.dat, cannot
+ * be merged by keeping the first copy; a classpath with differing copies of
+ * one is packed as MANIFEST instead.
+ */
+public class ClasspathPacker {
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_INFIX = "-classpath-";
+    private static final Logger LOGGER = Logger.getLogger(ClasspathPacker.class.getName());
+    // Read through getResources() and combined by their consumer, in formats not simply concatenated
+    private static final Set<String> AGGREGATE_RESOURCES = Set.of(
+            "META-INF/org/apache/logging/log4j/core/config/plugins/Log4j2Plugins.dat",
+            "META-INF/spring.factories",
+            "META-INF/spring.handlers",
+            "META-INF/spring.schemas",
+            "reference.conf");
+
+    public enum Mode {
+        DIRECT, MANIFEST, MERGED;
+
+        /**
+         * Mode for a config value, DIRECT for anything unknown
+         */
+        public static Mode parse(String value) {
+            if (value != null) {
+                for (Mode mode : values()) {
+                    if (mode.name().equalsIgnoreCase(value.trim())) {
+                        return mode;
+                    }
+                }
+            }
+            return DIRECT;
+        }
+    }
+
+    private final Path versionsDir;
+    private final StorageLedger ledger;
+
+    public ClasspathPacker(Path versionsDir, StorageLedger ledger) {
+        this.versionsDir = versionsDir;
+        this.ledger = ledger;
+    }
+
+    /**
+     * Jar standing in for the given classpath, built if not cached yet
+     * Entries keep their order: for duplicate resources the first jar wins,
+     * exactly as with the plain classpath.
+     */
+    public Path pack(String version, List<Path> classpath, Mode mode) throws IOException {
+        if (mode == Mode.DIRECT) {
+            throw new IllegalArgumentException("Nothing to pack in DIRECT mode");
+        }
+        Path dir = versionsDir.resolve(version);
+        String prefix = version + FILE_INFIX;
+        Path packed = dir.resolve(prefix + fingerprint(classpath, mode) + ".jar");
+        if (Files.isRegularFile(packed)) {
+            return packed;
+        }
+
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, prefix, ".tmp");
+        try {
+            if (mode == Mode.MERGED) {
+                if (!writeMerged(temp, classpath)) {
+                    mode = Mode.MANIFEST;
+                    writeManifestOnly(temp, dir, classpath);
+                }
+            } else {
+                writeManifestOnly(temp, dir, classpath);
+            }
+            Files.move(temp, packed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        ledger.recordWrite(packed);
+        removeStale(dir, prefix, packed);
+        LOGGER.info(String.format("Packed %d classpath entries of %s (%s) in %d ms", classpath.size(), version,
+                mode.name().toLowerCase(Locale.ROOT), (System.nanoTime() - start) / 1_000_000));
+        return packed;
+    }
+
+    private static String fingerprint(List<Path> classpath, Mode mode) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        StringBuilder key = new StringBuilder().append(FORMAT_VERSION).append('\n').append(mode).append('\n');
+        for (Path entry : classpath) {
+            key.append(entry.toAbsolutePath());
+            if (Files.exists(entry)) {
+                key.append('\t').append(Files.size(entry))
+                        .append('\t').append(Files.getLastModifiedTime(entry).toMillis());
+            }
+            key.append('\n');
+        }
+        byte[] hash = digest.digest(key.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private static void writeManifestOnly(Path target, Path dir, List<Path> classpath) throws IOException {
+        StringBuilder urls = new StringBuilder();
+        for (Path entry : classpath) {
+            String relative = dir.toAbsolutePath().relativize(entry.toAbsolutePath()).toString()
+                    .replace(entry.getFileSystem().getSeparator(), "/");
+            if (Files.isDirectory(entry)) {
+                relative += "/";
+            }
+            try {
+                urls.append(urls.length() > 0 ? " " : "").append(new URI(null, null, relative, null).toASCIIString());
+            } catch (URISyntaxException e) {
+                throw new IOException("Cannot reference " + entry + " from a manifest", e);
+            }
+        }
+        Manifest manifest = newManifest();
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, urls.toString());
+        try (OutputStream out = Files.newOutputStream(target);
+             JarOutputStream jar = new JarOutputStream(new BufferedOutputStream(out), manifest)) {
+            jar.finish();
+        }
+    }
+
+    /**
+     * Returns false, leaving target to be overwritten, when an aggregate
+     * resource has differing copies
+     */
+    private static boolean writeMerged(Path target, List<Path> classpath) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        boolean multiRelease = false;
+        for (Path entry : classpath) {
+            if (!Files.isRegularFile(entry)) {
+                // Missing jars are skipped by the JVM as well; directories cannot be merged
+                if (Files.isDirectory(entry)) {
+                    throw new IOException("Cannot merge classpath directory " + entry);
+                }
+                continue;
+            }
+            jars.add(entry);
+            try (JarFile jar = new JarFile(entry.toFile(), false)) {
+                Manifest manifest = jar.getManifest();
+                multiRelease |= manifest != null
+                        && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(Attributes.Name.MULTI_RELEASE));
+            }
+        }
+
+        Manifest manifest = newManifest();
+        if (multiRelease) {
+            manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+        }
+        Set<String> written = new HashSet<>();
+        // Service registrations are concatenated: ServiceLoader reads every copy on a plain classpath
+        Map<String, ByteArrayOutputStream> services = new LinkedHashMap<>();
+        Map<String, byte[]> aggregates = new HashMap<>();
+        try (OutputStream file = Files.newOutputStream(target);
+             JarOutputStream out = new JarOutputStream(new BufferedOutputStream(file, 1 << 16), manifest)) {
+            out.setMethod(ZipOutputStream.STORED);
+            written.add(JarFile.MANIFEST_NAME);
+            for (Path path : jars) {
+                try (JarFile jar = new JarFile(path.toFile(), false)) {
+                    Enumeration<? extends ZipEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        if (isExcluded(name)) {
+                            continue;
+                        }
+                        if (name.startsWith("META-INF/services/") && !entry.isDirectory()) {
+                            ByteArrayOutputStream merged = services.computeIfAbsent(name, n -> new ByteArrayOutputStream());
+                            try (InputStream in = jar.getInputStream(entry)) {
+                                byte[] data = in.readAllBytes();
+                                merged.write(data);
+                                if (data.length > 0 && data[data.length - 1] != '\n') {
+                                    merged.write('\n');
+                                }
+                            }
+                            continue;
+                        }
+                        boolean aggregate = AGGREGATE_RESOURCES.contains(name);
+                        if (!written.add(name) && !aggregate) {
+                            continue;
+                        }
+                        byte[] data;
+                        if (entry.isDirectory()) {
+                            data = new byte[0];
+                        } else {
+                            try (InputStream in = jar.getInputStream(entry)) {
+                                data = in.readAllBytes();
+                            }
+                        }
+                        if (aggregate) {
+                            byte[] first = aggregates.putIfAbsent(name, data);
+                            if (first != null) {
+                                if (Arrays.equals(first, data)) {
+                                    continue;
+                                }
+                                LOGGER.info("Differing copies of " + name + " in " + path.getFileName()
+                                        + ", packing the classpath as a manifest jar");
+                                return false;
+                            }
+                        }
+                        putStored(out, name, entry.getTime(), data);
+                    }
+                }
+            }
+            for (Map.Entry<String, ByteArrayOutputStream> service : services.entrySet()) {
+                putStored(out, service.getKey(), -1, service.getValue().toByteArray());
+            }
+        }
+        return true;
+    }
+
+    private static void putStored(JarOutputStream out, String name, long time, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        if (time != -1) {
+            entry.setTime(time);
+        }
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    /**
+     * Entries that describe a source jar rather than belong to the merged one:
+     * its manifest and index, signatures (which would no longer verify) and
+     * module descriptors
+     */
+    private static boolean isExcluded(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        if (upper.equals("META-INF/MANIFEST.MF") || upper.equals("META-INF/INDEX.LIST")) {
+            return true;
+        }
+        if (upper.startsWith("META-INF/") && upper.indexOf('/', 9) < 0
+                && (upper.endsWith(".SF") || upper.endsWith(".RSA") || upper.endsWith(".DSA")
+                        || upper.endsWith(".EC") || upper.startsWith("META-INF/SIG-"))) {
+            return true;
+        }
+        return name.equals("module-info.class")
+                || (name.startsWith("META-INF/versions/") && name.endsWith("/module-info.class"));
+    }
+
+    private static Manifest newManifest() {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(new Attributes.Name("Created-By"), "HarmonyMCLauncher");
+        return manifest;
+    }
+
+    /**
+     * Drop jars packed for an earlier classpath of this version
+     */
+    private void removeStale(Path dir, String prefix, Path current) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path file : stream) {
+                if (!file.equals(current) && file.toString().endsWith(".jar")) {
+                    ledger.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to remove stale packed classpath of " + dir.getFileName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.mclaunch.launcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 hashing tuned for install verification
+ * Large files are hashed through memory-mapped windows, small ones through
+ * a per-thread reused buffer, so parallel verification allocates nothing
+ * per file.
+ */
+public final class FileHasher {
+    private static final long MMAP_THRESHOLD = 4L * 1024 * 1024;
+    private static final long MMAP_WINDOW = 64L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> newDigest("SHA-1"));
+
+    private FileHasher() {
+    }
+
+    /**
+     * Lower-case hex SHA-1 of a file
+     */
+    public static String sha1(Path file) throws IOException {
+        MessageDigest digest = SHA1.get();
+        digest.reset();
+        long size = Files.size(file);
+        if (size >= MMAP_THRESHOLD) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (long position = 0; position < size; position += MMAP_WINDOW) {
+                    long length = Math.min(MMAP_WINDOW, size - position);
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    digest.update(window);
+                }
+            }
+        } else {
+            byte[] buffer = BUFFER.get();
+            try (InputStream in = Files.newInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Check size (when known) and SHA-1 (when known) of a file
+     */
+    public static boolean matches(Path file, String expectedSha1, long expectedSize) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        if (expectedSize >= 0 && Files.size(file) != expectedSize) {
+            return false;
+        }
+        return expectedSha1 == null || expectedSha1.equalsIgnoreCase(sha1(file));
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+
+    static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.mclaunch.launcher;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed, indexed store for game session logs
+ * Each session is written as independently deflated blocks of lines
+ * (&lt;session&gt;.logz) with a sparse block index (&lt;session&gt;.idx) holding the
+ * first line number, file offset and time range of every block. Reads seek
+ * to the blocks they need instead of decompressing the whole session.
+ */
+public class GameLogStore {
+    private static final String LOGS_DIR = "/data/storage/el2/base/minecraft/logs/sessions";
+    private static final Logger LOGGER = Logger.getLogger(GameLogStore.class.getName());
+    private static final String DATA_SUFFIX = ".logz";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int BLOCK_SIZE = 64 * 1024; // uncompressed bytes per block
+    private static final int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 8 + 4 + 4 + 4;
+    private static final Pattern CRASH_PATTERN = Pattern.compile(
+            "---- Minecraft Crash Report ----|Exception in thread|A fatal error has been detected|"
+            + "#\\s+SIG[A-Z]+|/FATAL\\]|Could not reserve enough space|OutOfMemoryError");
+
+    private final Path logsDir;
+
+    public GameLogStore() {
+        this(LOGS_DIR);
+    }
+
+    public GameLogStore(String logsDir) {
+        this.logsDir = Paths.get(logsDir);
+    }
+
+    /**
+     * Start a new session log
+     */
+    public SessionWriter openSession(String label) throws IOException {
+        Files.createDirectories(logsDir);
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        String safeLabel = label == null ? "game" : label.replaceAll("[^A-Za-z0-9._-]", "_");
+        String sessionId = stamp + "_" + safeLabel;
+        return new SessionWriter(sessionId, logsDir.resolve(sessionId + DATA_SUFFIX),
+                logsDir.resolve(sessionId + INDEX_SUFFIX));
+    }
+
+    /**
+     * Session ids, newest first
+     */
+    public List<String> listSessions() {
+        List<String> sessions = new ArrayList<>();
+        File[] files = logsDir.toFile().listFiles((dir, name) -> name.endsWith(INDEX_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                sessions.add(name.substring(0, name.length() - INDEX_SUFFIX.length()));
+            }
+        }
+        sessions.sort(Collections.reverseOrder());
+        return sessions;
+    }
+
+    /**
+     * Total number of lines in a session
+     */
+    public long getLineCount(String sessionId) throws IOException {
+        List<BlockIndex> blocks = readIndex(sessionId);
+        if (blocks.isEmpty()) {
+            return 0;
+        }
+        BlockIndex last = blocks.get(blocks.size() - 1);
+        return last.firstLine + last.lineCount;
+    }
+
+    /**
+     * Read lines [fromLine, fromLine + count), decompressing only the blocks that hold them
+     */
+    public List<String> readLines(String sessionId, long fromLine, int count) throws IOException {
+        List<String> result = new ArrayList<>();
+        List<BlockIndex> blocks = readIndex(sessionId);
+        if (blocks.isEmpty() || count <= 0) {
+            return result;
+        }
+        int blockNo = findBlock(blocks, Math.max(0, fromLine));
+        try (RandomAccessFile data = new RandomAccessFile(dataPath(sessionId).toFile(), "r")) {
+            for (int i = blockNo; i < blocks.size() && result.size() < count; i++) {
+                BlockIndex block = blocks.get(i);
+                List<String> lines = readBlock(data, block);
+                int skip = (int) Math.max(0, fromLine - block.firstLine);
+                for (int j = skip; j < lines.size() && result.size() < count; j++) {
+                    result.add(lines.get(j));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Last n lines of a session
+     */
+    public List<String> tail(String sessionId, int n) throws IOException {
+        long total = getLineCount(sessionId);
+        return readLines(sessionId, Math.max(0, total - n), n);
+    }
+
+    /**
+     * Find lines matching a pattern, optionally limited to a time window
+     * Blocks outside the window are skipped using the timestamp index
+     */
+    public List<LogMatch> search(String sessionId, Pattern pattern, long fromTime, long toTime, int maxResults)
+            throws IOException {
+        List<LogMatch> matches = new ArrayList<>();
+        List<BlockIndex> blocks = readIndex(sessionId);
+        try (RandomAccessFile data = new RandomAccessFile(dataPath(sessionId).toFile(), "r")) {
+            for (BlockIndex block : blocks) {
+                if (block.lastTime < fromTime || block.firstTime > toTime) {
+                    continue;
+                }
+                List<String> lines = readBlock(data, block);
+                for (int i = 0; i < lines.size(); i++) {
+                    if (pattern.matcher(lines.get(i)).find()) {
+                        matches.add(new LogMatch(block.firstLine + i, lines.get(i), block.firstTime));
+                        if (matches.size() >= maxResults) {
+                            return matches;
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    public List<LogMatch> search(String sessionId, String literal, int maxResults) throws IOException {
+        return search(sessionId, Pattern.compile(Pattern.quote(literal)), Long.MIN_VALUE, Long.MAX_VALUE, maxResults);
+    }
+
+    /**
+     * Lines around the last match of a pattern, scanning blocks from the end
+     * Returns an empty list when nothing matches
+     */
+    public List<String> linesAroundLastMatch(String sessionId, Pattern pattern, int before, int after)
+            throws IOException {
+        List<BlockIndex> blocks = readIndex(sessionId);
+        try (RandomAccessFile data = new RandomAccessFile(dataPath(sessionId).toFile(), "r")) {
+            for (int b = blocks.size() - 1; b >= 0; b--) {
+                BlockIndex block = blocks.get(b);
+                List<String> lines = readBlock(data, block);
+                for (int i = lines.size() - 1; i >= 0; i--) {
+                    if (pattern.matcher(lines.get(i)).find()) {
+                        long line = block.firstLine + i;
+                        long from = Math.max(0, line - before);
+                        return readLines(sessionId, from, (int) (line - from) + after + 1);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Context around the last crash marker of a session
+     */
+    public List<String> crashContext(String sessionId, int before, int after) throws IOException {
+        return linesAroundLastMatch(sessionId, CRASH_PATTERN, before, after);
+    }
+
+    /**
+     * Delete the oldest sessions until the store fits in the budget
+     * Sessions still being written are never removed
+     */
+    public void enforceBudget(long maxBytes, List<String> activeSessions) {
+        List<String> sessions = listSessions();
+        long total = 0;
+        for (String session : sessions) {
+            total += sessionSize(session);
+        }
+        for (int i = sessions.size() - 1; i >= 0 && total > maxBytes; i--) {
+            String session = sessions.get(i);
+            if (activeSessions != null && activeSessions.contains(session)) {
+                continue;
+            }
+            long size = sessionSize(session);
+            try {
+                Files.deleteIfExists(dataPath(session));
+                Files.deleteIfExists(indexPath(session));
+                total -= size;
+                LOGGER.info("Rotated out log session " + session);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to delete log session " + session, e);
+            }
+        }
+    }
+
+    private long sessionSize(String sessionId) {
+        return dataPath(sessionId).toFile().length() + indexPath(sessionId).toFile().length();
+    }
+
+    private Path dataPath(String sessionId) {
+        return logsDir.resolve(sessionId + DATA_SUFFIX);
+    }
+
+    private Path indexPath(String sessionId) {
+        return logsDir.resolve(sessionId + INDEX_SUFFIX);
+    }
+
+    private List<BlockIndex> readIndex(String sessionId) throws IOException {
+        Path index = indexPath(sessionId);
+        if (!Files.exists(index)) {
+            return new ArrayList<>();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(index));
+        List<BlockIndex> blocks = new ArrayList<>(buffer.remaining() / INDEX_ENTRY_SIZE);
+        // A partially written trailing entry is ignored
+        while (buffer.remaining() >= INDEX_ENTRY_SIZE) {
+            BlockIndex block = new BlockIndex();
+            block.firstLine = buffer.getLong();
+            block.offset = buffer.getLong();
+            block.firstTime = buffer.getLong();
+            block.lastTime = buffer.getLong();
+            block.lineCount = buffer.getInt();
+            block.compressedLength = buffer.getInt();
+            block.rawLength = buffer.getInt();
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    private static int findBlock(List<BlockIndex> blocks, long line) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks.get(mid).firstLine <= line) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> readBlock(RandomAccessFile data, BlockIndex block) throws IOException {
+        byte[] compressed = new byte[block.compressedLength];
+        data.seek(block.offset);
+        data.readFully(compressed);
+
+        Inflater inflater = new Inflater();
+        byte[] raw = new byte[block.rawLength];
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt log block at offset " + block.offset, e);
+        } finally {
+            inflater.end();
+        }
+
+        String text = new String(raw, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>(Arrays.asList(text.split("\n", -1)));
+        if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        return lines;
+    }
+
+    /**
+     * Sparse index entry for one compressed block
+     */
+    private static class BlockIndex {
+        long firstLine;
+        long offset;
+        long firstTime;
+        long lastTime;
+        int lineCount;
+        int compressedLength;
+        int rawLength;
+    }
+
+    /**
+     * A matching line and where it was found
+     */
+    public static class LogMatch {
+        private final long lineNumber;
+        private final String line;
+        private final long blockTime;
+
+        LogMatch(long lineNumber, String line, long blockTime) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.blockTime = blockTime;
+        }
+
+        public long getLineNumber() { return lineNumber; }
+        public String getLine() { return line; }
+        public long getBlockTime() { return blockTime; }
+    }
+
+    /**
+     * Appends lines to one session, compressing a block at a time
+     */
+    public static class SessionWriter implements Closeable {
+        private final String sessionId;
+        private final FileOutputStream dataFile;
+        private final DataOutputStream index;
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final byte[] deflateBuffer = new byte[BLOCK_SIZE];
+        private long offset;
+        private long nextLine;
+        private long blockFirstLine;
+        private long blockFirstTime;
+        private long blockLastTime;
+        private int blockLines;
+        private boolean closed;
+
+        SessionWriter(String sessionId, Path dataPath, Path indexPath) throws IOException {
+            this.sessionId = sessionId;
+            this.dataFile = new FileOutputStream(dataPath.toFile());
+            this.index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath.toFile())));
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public synchronized void append(String line) throws IOException {
+            if (closed) {
+                throw new IOException("Session closed: " + sessionId);
+            }
+            long now = System.currentTimeMillis();
+            if (blockLines == 0) {
+                blockFirstLine = nextLine;
+                blockFirstTime = now;
+            }
+            blockLastTime = now;
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            pending.write(bytes, 0, bytes.length);
+            pending.write('\n');
+            blockLines++;
+            nextLine++;
+            if (pending.size() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * Compress and write the pending lines as one block
+         */
+        public synchronized void flushBlock() throws IOException {
+            if (blockLines == 0) {
+                return;
+            }
+            byte[] raw = pending.toByteArray();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(deflateBuffer);
+                compressed.write(deflateBuffer, 0, n);
+            }
+
+            dataFile.write(compressed.toByteArray());
+            dataFile.flush();
+
+            // Index entry is written after its data so readers never see a dangling block
+            index.writeLong(blockFirstLine);
+            index.writeLong(offset);
+            index.writeLong(blockFirstTime);
+            index.writeLong(blockLastTime);
+            index.writeInt(blockLines);
+            index.writeInt(compressed.size());
+            index.writeInt(raw.length);
+            index.flush();
+
+            offset += compressed.size();
+            pending.reset();
+            blockLines = 0;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            try {
+                flushBlock();
+            } finally {
+                closed = true;
+                deflater.end();
+                dataFile.close();
+                index.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.mclaunch.launcher;
+
+/**
+ * Snapshot of a running launcher operation, as published by ProgressTracker
+ */
+public final class InstallProgress {
+    private final String phase;
+    private final long bytesDone;
+    private final long bytesTotal;
+    private final long filesDone;
+    private final long filesTotal;
+    private final long bytesPerSecond;
+    private final boolean cancelled;
+    private final boolean finished;
+
+    InstallProgress(String phase, long bytesDone, long bytesTotal, long filesDone, long filesTotal,
+                    long bytesPerSecond, boolean cancelled, boolean finished) {
+        this.phase = phase;
+        this.bytesDone = bytesDone;
+        this.bytesTotal = bytesTotal;
+        this.filesDone = filesDone;
+        this.filesTotal = filesTotal;
+        this.bytesPerSecond = bytesPerSecond;
+        this.cancelled = cancelled;
+        this.finished = finished;
+    }
+
+    /**
+     * Current step, e.g. "manifest", "libraries", "assets", "launching"
+     */
+    public String getPhase() { return phase; }
+    public long getBytesDone() { return bytesDone; }
+    public long getBytesTotal() { return bytesTotal; }
+    public long getFilesDone() { return filesDone; }
+    public long getFilesTotal() { return filesTotal; }
+    public long getBytesPerSecond() { return bytesPerSecond; }
+    public boolean isCancelled() { return cancelled; }
+    public boolean isFinished() { return finished; }
+
+    /**
+     * Completed share in [0, 1], by bytes when the total is known, else by files
+     */
+    public double getFraction() {
+        if (bytesTotal > 0) {
+            return Math.min(1.0, (double) bytesDone / bytesTotal);
+        }
+        return filesTotal > 0 ? Math.min(1.0, (double) filesDone / filesTotal) : (finished ? 1.0 : 0.0);
+    }
+
+    boolean sameCounters(InstallProgress other) {
+        return other != null && phase.equals(other.phase) && bytesDone == other.bytesDone
+                && bytesTotal == other.bytesTotal && filesDone == other.filesDone && filesTotal == other.filesTotal
+                && cancelled == other.cancelled && finished == other.finished;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d files, %.1f/%.1f MB, %.1f MB/s%s", phase, filesDone, filesTotal,
+                bytesDone / 1048576.0, bytesTotal / 1048576.0, bytesPerSecond / 1048576.0,
+                cancelled ? " (cancelled)" : finished ? " (finished)" : "");
+    }
+}
@@ -0,0 +1,276 @@
+package com.mclaunch.launcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verify &amp; repair for an installed version
+ * Hashes the client jar, every library (including the transitive ones a
+ * loader profile resolved through Maven) and every asset object in parallel
+ * and re-downloads only the files that are missing or corrupt.
+ */
+public class InstallVerifier {
+    private static final Logger LOGGER = Logger.getLogger(InstallVerifier.class.getName());
+
+    private final String minecraftDir;
+    private final VersionMetadataCache metadataCache;
+    private final AssetManager assetManager;
+    private final MavenResolver mavenResolver;
+    private final int parallelism;
+
+    public InstallVerifier(String minecraftDir, VersionMetadataCache metadataCache, AssetManager assetManager) {
+        this(minecraftDir, metadataCache, assetManager, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    public InstallVerifier(String minecraftDir, VersionMetadataCache metadataCache, AssetManager assetManager,
+                           MavenResolver mavenResolver) {
+        this(minecraftDir, metadataCache, assetManager, mavenResolver, Runtime.getRuntime().availableProcessors());
+    }
+
+    public InstallVerifier(String minecraftDir, VersionMetadataCache metadataCache, AssetManager assetManager,
+                           MavenResolver mavenResolver, int parallelism) {
+        this.minecraftDir = minecraftDir;
+        this.metadataCache = metadataCache;
+        this.assetManager = assetManager;
+        this.mavenResolver = mavenResolver;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Verify a version and optionally repair what is broken
+     */
+    public VerifyReport verify(String version, boolean repair) {
+        VerifyReport report = new VerifyReport(version);
+        long start = System.nanoTime();
+
+        VersionMetadata metadata;
+        try {
+            metadata = metadataCache.load(version);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Cannot read version JSON for " + version, e);
+            metadata = null;
+        }
+        if (metadata == null) {
+            report.addFailure("versions/" + version + "/" + version + ".json");
+            report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return report;
+        }
+
+        // A loader profile runs on the jar of the version it inherits from
+        String jarVersion = metadata.getJarVersion() != null ? metadata.getJarVersion() : version;
+        List<FileCheck> checks = new ArrayList<>();
+        checks.add(new FileCheck(Paths.get(minecraftDir, "versions", jarVersion, jarVersion + ".jar"),
+                metadata.getClientSha1(), metadata.getClientSize(), metadata.getClientUrl()));
+        // One check per file: concurrent repairs of one path would share its .part file
+        Set<String> libraryPaths = new HashSet<>();
+        for (VersionMetadata.LibraryEntry library : metadata.getLibraries()) {
+            if (!libraryPaths.add(library.getPath())) {
+                continue;
+            }
+            checks.add(new FileCheck(Paths.get(minecraftDir, "libraries", library.getPath()),
+                    library.getSha1(), library.getSize(), library.getUrl()));
+        }
+        if (mavenResolver != null) {
+            for (VersionMetadata.LibraryEntry library : mavenResolver.getResolvedLibraries(version)) {
+                if (library.getPath() != null && libraryPaths.add(library.getPath())) {
+                    checks.add(new FileCheck(Paths.get(minecraftDir, "libraries", library.getPath()),
+                            library.getSha1(), -1, library.getUrl()));
+                }
+            }
+        }
+        checks.addAll(assetChecks(metadata, repair, report));
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "install-verify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(checks.size());
+            for (FileCheck check : checks) {
+                futures.add(pool.submit(() -> runCheck(check, repair, report)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.interrupted = true;
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "Verification task failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        LOGGER.info(report.toString());
+        return report;
+    }
+
+    /**
+     * Checks for every object of the version's asset index; the index itself
+     * is verified (and repaired) first because the object list comes from it
+     */
+    private List<FileCheck> assetChecks(VersionMetadata metadata, boolean repair, VerifyReport report) {
+        List<FileCheck> checks = new ArrayList<>();
+        String indexId = metadata.getAssetIndexId();
+        if (indexId == null) {
+            return checks;
+        }
+        FileCheck indexCheck = new FileCheck(Paths.get(minecraftDir, "assets", "indexes", indexId + ".json"),
+                metadata.getAssetIndexSha1(), -1, metadata.getAssetIndexUrl());
+        runCheck(indexCheck, repair, report);
+        if (!Files.exists(indexCheck.path)) {
+            return checks;
+        }
+
+        try {
+            Map<String, Object> index = JsonParser.parseObject(
+                    new String(Files.readAllBytes(indexCheck.path), StandardCharsets.UTF_8));
+            Map<String, Object> objects = JsonParser.getObject(index, "objects");
+            if (objects == null) {
+                return checks;
+            }
+            // Many names share one object; check each object file once
+            Set<String> hashes = new HashSet<>();
+            for (Object value : objects.values()) {
+                if (!(value instanceof Map)) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> object = (Map<String, Object>) value;
+                String hash = JsonParser.getString(object, "hash");
+                if (hash == null || hash.length() < 2 || !hashes.add(hash)) {
+                    continue;
+                }
+                checks.add(new FileCheck(Paths.get(minecraftDir, "assets", "objects", hash.substring(0, 2), hash),
+                        hash, JsonParser.getLong(object, "size", -1), assetManager.getAssetUrl(hash)));
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unreadable asset index " + indexCheck.path, e);
+            report.addFailure(indexCheck.path.toString());
+        }
+        return checks;
+    }
+
+    private void runCheck(FileCheck check, boolean repair, VerifyReport report) {
+        report.checked.incrementAndGet();
+        boolean exists = Files.isRegularFile(check.path);
+        boolean valid = false;
+        if (exists) {
+            try {
+                report.bytesHashed.addAndGet(Files.size(check.path));
+                valid = FileHasher.matches(check.path, check.sha1, check.size);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to hash " + check.path, e);
+            }
+        }
+        if (valid) {
+            report.ok.incrementAndGet();
+            return;
+        }
+
+        if (exists) {
+            report.corrupt.incrementAndGet();
+        } else {
+            report.missing.incrementAndGet();
+        }
+        if (!repair) {
+            report.addFailure(check.path.toString());
+            return;
+        }
+        if (check.url != null && assetManager.downloadFile(check.url, check.path, check.sha1)) {
+            report.repaired.incrementAndGet();
+        } else {
+            report.addFailure(check.path.toString());
+        }
+    }
+
+    private static class FileCheck {
+        final Path path;
+        final String sha1;
+        final long size;
+        final String url;
+
+        FileCheck(Path path, String sha1, long size, String url) {
+            this.path = path;
+            this.sha1 = sha1;
+            this.size = size;
+            this.url = url;
+        }
+    }
+
+    /**
+     * Result of a verify (and repair) run
+     */
+    public static class VerifyReport {
+        private final String version;
+        private final AtomicInteger checked = new AtomicInteger();
+        private final AtomicInteger ok = new AtomicInteger();
+        private final AtomicInteger missing = new AtomicInteger();
+        private final AtomicInteger corrupt = new AtomicInteger();
+        private final AtomicInteger repaired = new AtomicInteger();
+        private final AtomicLong bytesHashed = new AtomicLong();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        private volatile long elapsedMillis;
+        private volatile boolean interrupted;
+
+        VerifyReport(String version) {
+            this.version = version;
+        }
+
+        void addFailure(String path) {
+            failures.add(path);
+        }
+
+        public String getVersion() { return version; }
+        public int getChecked() { return checked.get(); }
+        public int getOk() { return ok.get(); }
+        public int getMissing() { return missing.get(); }
+        public int getCorrupt() { return corrupt.get(); }
+        public int getRepaired() { return repaired.get(); }
+        public long getBytesHashed() { return bytesHashed.get(); }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        /**
+         * Files that are still missing or corrupt after the run
+         */
+        public List<String> getFailures() {
+            synchronized (failures) {
+                return new ArrayList<>(failures);
+            }
+        }
+
+        /**
+         * True when every file is present and intact (after repair, if requested)
+         */
+        public boolean isHealthy() {
+            return !interrupted && failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("VerifyReport{version='%s', checked=%d, ok=%d, missing=%d, corrupt=%d, "
+                            + "repaired=%d, failed=%d, hashed=%d MB, %d ms}",
+                    version, getChecked(), getOk(), getMissing(), getCorrupt(), getRepaired(),
+                    failures.size(), getBytesHashed() / (1024 * 1024), elapsedMillis);
+        }
+    }
+}
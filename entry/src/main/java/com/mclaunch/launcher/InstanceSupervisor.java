@@ -0,0 +1,302 @@
+package com.mclaunch.launcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs several profiles side by side
+ * Each instance gets its own game directory while versions, libraries and
+ * assets stay shared. Heap budgets of all running instances must fit in
+ * device RAM, and each instance can be niced or pinned to a CPU set.
+ */
+public class InstanceSupervisor {
+    private static final Logger LOGGER = Logger.getLogger(InstanceSupervisor.class.getName());
+    private static final long SYSTEM_RESERVE_MB = 1024; // left for the OS and the launcher UI
+    private static final long MIN_JVM_OVERHEAD_MB = 256; // metaspace, code cache, native buffers
+    private static final long STOP_TIMEOUT_MS = 10000;
+
+    private final MinecraftLauncher launcher;
+    private final ProfileManager profileManager;
+    private final Map<String, GameInstance> instances = new ConcurrentHashMap<>();
+    // Footprint reserved by launches still installing or starting, by profile id
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final long deviceMemoryMb;
+
+    public InstanceSupervisor(MinecraftLauncher launcher, ProfileManager profileManager) {
+        this.launcher = launcher;
+        this.profileManager = profileManager;
+        this.deviceMemoryMb = readDeviceMemoryMb();
+    }
+
+    /**
+     * Launch a profile as a separate instance
+     * Returns null if the profile is already running or its heap does not fit.
+     * Only admission holds the lock; installing and starting the game do not,
+     * so other profiles can be launched or stopped meanwhile.
+     */
+    public GameInstance launch(ProfileManager.UserProfile profile, MinecraftLauncher.LaunchOptions options) {
+        long required = footprintMb(options.getMaxMemory());
+        synchronized (this) {
+            GameInstance existing = instances.get(profile.getId());
+            if ((existing != null && existing.isAlive()) || pending.containsKey(profile.getId())) {
+                LOGGER.warning("Profile already running: " + profile.getName());
+                return null;
+            }
+            if (required > getAvailableMemoryMb()) {
+                LOGGER.warning("Not enough memory for " + profile.getName() + ": needs " + required
+                        + " MB, " + getAvailableMemoryMb() + " MB available");
+                return null;
+            }
+            pending.put(profile.getId(), required);
+        }
+
+        MinecraftLauncher.LaunchOptions resolved = resolveOptions(profile, options);
+        try {
+            Process process = launcher.startGame(profile.getVersion(), resolved);
+            GameInstance instance = new GameInstance(profile, resolved, process,
+                    launcher.startTelemetry(process, resolved));
+            synchronized (this) {
+                instances.put(profile.getId(), instance);
+                pending.remove(profile.getId());
+            }
+            launcher.handleProcessOutput(process, "[MC:" + profile.getName() + "] ", profile.getName());
+
+            profile.setLastPlayed(System.currentTimeMillis());
+            process.onExit().thenRun(() -> onInstanceExit(instance));
+            LOGGER.info("Started instance " + profile.getName() + " (pid " + process.pid() + ")");
+            return instance;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to launch instance " + profile.getName(), e);
+            pending.remove(profile.getId());
+            return null;
+        }
+    }
+
+    /**
+     * Launch a profile with the default options for its configuration
+     */
+    public GameInstance launch(ProfileManager.UserProfile profile) {
+        return launch(profile, launcher.defaultLaunchOptions());
+    }
+
+    /**
+     * Stop an instance, forcibly if it does not exit in time
+     */
+    public boolean stop(String profileId) {
+        GameInstance instance = instances.get(profileId);
+        if (instance == null) {
+            return false;
+        }
+        instance.stopRequested = true;
+        Process process = instance.getProcess();
+        if (!process.isAlive()) {
+            return true;
+        }
+        process.destroy();
+        try {
+            if (!process.waitFor(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warning("Instance did not exit, killing: " + instance.getProfile().getName());
+                process.destroyForcibly().waitFor(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !process.isAlive();
+    }
+
+    /**
+     * Stop and relaunch an instance with the same options
+     */
+    public GameInstance restart(String profileId) {
+        GameInstance instance = instances.get(profileId);
+        if (instance == null) {
+            return null;
+        }
+        stop(profileId);
+        return launch(instance.getProfile(), instance.getOptions());
+    }
+
+    public void stopAll() {
+        for (String profileId : new ArrayList<>(instances.keySet())) {
+            stop(profileId);
+        }
+    }
+
+    /**
+     * Apply the storage budget, never evicting the version of a running instance
+     */
+    public VersionEvictor.EvictionReport enforceStorageBudget(Collection<ProfileManager.UserProfile> profiles) {
+        Set<String> pinned = new HashSet<>();
+        for (GameInstance instance : getRunningInstances()) {
+            pinned.add(instance.getProfile().getVersion());
+        }
+        return launcher.enforceStorageBudget(profiles, pinned);
+    }
+
+    public GameInstance getInstance(String profileId) {
+        return instances.get(profileId);
+    }
+
+    /**
+     * Snapshot of all tracked instances, including exited ones
+     */
+    public List<GameInstance> getInstances() {
+        return new ArrayList<>(instances.values());
+    }
+
+    public List<GameInstance> getRunningInstances() {
+        List<GameInstance> running = new ArrayList<>();
+        for (GameInstance instance : instances.values()) {
+            if (instance.isAlive()) {
+                running.add(instance);
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Memory still available for another instance, after the system reserve
+     * and the footprint of every running or starting instance
+     */
+    public long getAvailableMemoryMb() {
+        long used = 0;
+        for (long reserved : pending.values()) {
+            used += reserved;
+        }
+        for (GameInstance instance : getRunningInstances()) {
+            used += footprintMb(instance.getOptions().getMaxMemory());
+        }
+        return Math.max(0, deviceMemoryMb - SYSTEM_RESERVE_MB - used);
+    }
+
+    /**
+     * Largest -Xmx that still fits next to the running instances
+     */
+    public int getMaxHeapBudgetMb() {
+        long available = getAvailableMemoryMb();
+        // Invert footprintMb: heap + max(overhead, heap / 4)
+        long heap = Math.min(available - MIN_JVM_OVERHEAD_MB, available * 4 / 5);
+        return (int) Math.max(0, heap);
+    }
+
+    public long getDeviceMemoryMb() {
+        return deviceMemoryMb;
+    }
+
+    private static long footprintMb(int heapMb) {
+        return heapMb + Math.max(MIN_JVM_OVERHEAD_MB, heapMb / 4);
+    }
+
+    private MinecraftLauncher.LaunchOptions resolveOptions(ProfileManager.UserProfile profile,
+                                                           MinecraftLauncher.LaunchOptions options) {
+        MinecraftLauncher.LaunchOptions resolved = new MinecraftLauncher.LaunchOptions();
+        resolved.setGameDir(gameDirOf(profile));
+        resolved.setUsername(profile.getUsername() != null ? profile.getUsername() : options.getUsername());
+        resolved.setUuid(profile.getUuid() != null ? profile.getUuid() : options.getUuid());
+        resolved.setAccessToken(profile.getAccessToken() != null ? profile.getAccessToken() : options.getAccessToken());
+        resolved.setMaxMemory(options.getMaxMemory());
+        resolved.setMinMemory(Math.min(options.getMinMemory(), options.getMaxMemory()));
+        resolved.setNiceness(options.getNiceness());
+        resolved.setCpuAffinity(options.getCpuAffinity());
+        resolved.setGcLogFile(resolved.getGameDir() + "/" + MinecraftLauncher.GC_LOG_FILE);
+        return resolved;
+    }
+
+    /**
+     * Game directory a profile runs in; instances never share one, or they
+     * would clash on saves and logs
+     */
+    public String gameDirOf(ProfileManager.UserProfile profile) {
+        return profile.getGameDir() != null ? profile.getGameDir()
+                : launcher.getMinecraftDir() + "/profiles/" + profile.getId();
+    }
+
+    /**
+     * Backups of the worlds in a profile's own game directory
+     */
+    public WorldBackupStore getWorldBackups(ProfileManager.UserProfile profile) throws IOException {
+        return launcher.getWorldBackups().forProfile(profile.getId(), Paths.get(gameDirOf(profile)));
+    }
+
+    private void onInstanceExit(GameInstance instance) {
+        ProfileManager.UserProfile profile = instance.getProfile();
+        long seconds = (System.currentTimeMillis() - instance.getStartTime()) / 1000;
+        profile.setPlaytime(profile.getPlaytime() + (int) seconds);
+        if (profileManager != null) {
+            profileManager.saveProfile(profile);
+        }
+        LOGGER.info("Instance " + profile.getName() + " exited with code " + instance.getProcess().exitValue());
+    }
+
+    private static long readDeviceMemoryMb() {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get("/proc/meminfo"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("MemTotal:")) {
+                    String[] parts = line.trim().split("\\s+");
+                    return Long.parseLong(parts[1]) / 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to read device memory, assuming JVM max", e);
+        }
+        return Runtime.getRuntime().maxMemory() / (1024 * 1024);
+    }
+
+    /**
+     * A running or exited game instance
+     */
+    public static class GameInstance {
+        private final ProfileManager.UserProfile profile;
+        private final MinecraftLauncher.LaunchOptions options;
+        private final Process process;
+        private final ProcessTelemetry telemetry;
+        private final long startTime;
+        private volatile boolean stopRequested;
+
+        GameInstance(ProfileManager.UserProfile profile, MinecraftLauncher.LaunchOptions options, Process process,
+                     ProcessTelemetry telemetry) {
+            this.profile = profile;
+            this.options = options;
+            this.process = process;
+            this.telemetry = telemetry;
+            this.startTime = System.currentTimeMillis();
+        }
+
+        public ProfileManager.UserProfile getProfile() { return profile; }
+
+        public MinecraftLauncher.LaunchOptions getOptions() { return options; }
+
+        public Process getProcess() { return process; }
+
+        public ProcessTelemetry getTelemetry() { return telemetry; }
+
+        public long getPid() { return process.pid(); }
+
+        public long getStartTime() { return startTime; }
+
+        public boolean isAlive() { return process.isAlive(); }
+
+        public boolean isStopRequested() { return stopRequested; }
+
+        /**
+         * Exit code, or null while still running
+         */
+        public Integer getExitCode() {
+            return process.isAlive() ? null : process.exitValue();
+        }
+    }
+}
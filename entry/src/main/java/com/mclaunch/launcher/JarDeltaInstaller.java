@@ -0,0 +1,658 @@
+package com.mclaunch.launcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds a client jar from an installed neighbouring version plus the
+ * entries that changed
+ * The central directory of the remote jar is fetched with a Range request;
+ * every entry whose CRC, sizes and method match an entry of the neighbour's
+ * jar is copied from disk, the rest is fetched with a few coalesced Range
+ * requests. Local headers of copied entries are rebuilt from the remote
+ * central directory, so the result is only trusted once its SHA-1 matches
+ * the version JSON; any mismatch or unsupported jar (ZIP64, data
+ * descriptors, a server without Range support) means a full download.
+ */
+public class JarDeltaInstaller {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIZE = 30;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final int TAIL_GUESS = 128 * 1024; // usually holds the whole central directory
+    private static final int MERGE_GAP = 16 * 1024; // smaller reusable runs are fetched rather than split a request
+    private static final int MAX_PARALLEL_RANGES = 4;
+    private static final int MIN_REUSE_PERCENT = 25; // below this a full download is as good
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Release ids such as 1.20.4 or 1.21-pre1; similarity ranks them above any id prefix match
+    private static final Pattern RELEASE = Pattern.compile("(\\d+)\\.(\\d+)(?:\\.(\\d+))?");
+    private static final long RELEASE_SCORE = 1L << 20;
+    private static final long RELEASE_DISTANCE = 1000;
+    private static final Logger LOGGER = Logger.getLogger(JarDeltaInstaller.class.getName());
+    // Hosts that answered a Range request with the whole file; probing them again wastes a download
+    private static final Set<String> NO_RANGE_HOSTS = ConcurrentHashMap.newKeySet();
+
+    private final Path versionsDir;
+    private final StorageLedger ledger;
+
+    public JarDeltaInstaller(Path versionsDir, StorageLedger ledger) {
+        this.versionsDir = versionsDir;
+        this.ledger = ledger;
+    }
+
+    /**
+     * Try to build the client jar of version at target from a neighbour
+     * Completes with false (never exceptionally) when no delta was possible;
+     * the caller then downloads the full jar. Transferred bytes are reported
+     * to progress, reused ones are taken off its total.
+     */
+    public CompletableFuture<Boolean> install(String version, String url, Path target, String sha1, long size,
+                                              ProgressTracker progress) {
+        Path neighbour = findNeighbour(version);
+        if (neighbour == null || sha1 == null || size <= EOCD_SIZE || size > 0xFFFFFFFFL
+                || NO_RANGE_HOSTS.contains(host(url))) {
+            return CompletableFuture.completedFuture(false);
+        }
+        Delta delta = new Delta(version, url, target, sha1, size, neighbour, progress);
+        return delta.run().handle((done, error) -> {
+            if (error == null && done) {
+                return true;
+            }
+            delta.undo();
+            if (error != null && !progress.isCancelled()) {
+                LOGGER.info("Delta update of " + version + " from " + neighbour.getFileName() + " not possible: "
+                        + LauncherHttpClient.unwrap(error).getMessage());
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Installed client jar most likely to share entries with version: for
+     * releases the nearest release number (1.20.4 for 1.20.5, never 1.2.5 for
+     * 1.21), else the longest common id prefix (24w13a for 24w14a); the
+     * newest on a tie
+     */
+    Path findNeighbour(String version) {
+        Path best = null;
+        long bestScore = -1;
+        long bestTime = Long.MIN_VALUE;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(versionsDir, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String id = dir.getFileName().toString();
+                Path jar = dir.resolve(id + ".jar");
+                if (id.equals(version) || !Files.isRegularFile(jar)) {
+                    continue;
+                }
+                long score = similarity(id, version);
+                long time = Files.getLastModifiedTime(jar).toMillis();
+                if (score > bestScore || (score == bestScore && time > bestTime)) {
+                    best = jar;
+                    bestScore = score;
+                    bestTime = time;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return best;
+    }
+
+    private static String host(String url) {
+        String authority = URI.create(url).getAuthority();
+        return authority != null ? authority : "";
+    }
+
+    /**
+     * Higher is closer; any two release numbers rank above a prefix match
+     */
+    static long similarity(String a, String b) {
+        Matcher ma = RELEASE.matcher(a);
+        Matcher mb = RELEASE.matcher(b);
+        if (!ma.lookingAt() || !mb.lookingAt()) {
+            return commonPrefix(a, b);
+        }
+        long[] ra = releaseNumber(ma);
+        long[] rb = releaseNumber(mb);
+        if (ra[0] != rb[0]) {
+            return RELEASE_SCORE;
+        }
+        if (ra[1] != rb[1]) {
+            return RELEASE_SCORE + RELEASE_DISTANCE - Math.min(Math.abs(ra[1] - rb[1]), RELEASE_DISTANCE - 1);
+        }
+        return RELEASE_SCORE + 2 * RELEASE_DISTANCE - Math.min(Math.abs(ra[2] - rb[2]), RELEASE_DISTANCE - 1);
+    }
+
+    private static long[] releaseNumber(Matcher matcher) {
+        try {
+            return new long[] {Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+                    matcher.group(3) != null ? Long.parseLong(matcher.group(3)) : 0};
+        } catch (NumberFormatException e) {
+            return new long[] {-1, -1, -1};
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * One delta install; a failed future means nothing was installed
+     */
+    private final class Delta {
+        private final String version;
+        private final String url;
+        private final Path target;
+        private final String sha1;
+        private final long size;
+        private final Path neighbour;
+        private final ProgressTracker progress;
+        private final Path temp;
+        private final ExecutorService io = LauncherHttpClient.shared().getExecutor();
+        private final List<long[]> fetches = new ArrayList<>();
+        private volatile long fetchedBytes;
+        private volatile long reusedBytes;
+        private byte[] tail;
+        private long tailStart;
+
+        Delta(String version, String url, Path target, String sha1, long size, Path neighbour,
+              ProgressTracker progress) {
+            this.version = version;
+            this.url = url;
+            this.target = target;
+            this.sha1 = sha1;
+            this.size = size;
+            this.neighbour = neighbour;
+            this.progress = progress;
+            this.temp = target.resolveSibling(target.getFileName() + ".part");
+        }
+
+        CompletableFuture<Boolean> run() {
+            long start = System.nanoTime();
+            long guess = Math.min(size, TAIL_GUESS);
+            return fetch(size - guess, size)
+                    .thenCompose(bytes -> {
+                        long cdOffset = centralDirectoryOffset(bytes);
+                        if (cdOffset >= 0) {
+                            tailStart = size - guess;
+                            return CompletableFuture.completedFuture(bytes);
+                        }
+                        // The central directory starts before the guessed tail: fetch the rest of it
+                        long offset = -cdOffset - 1;
+                        tailStart = offset;
+                        return fetch(offset, size - guess).thenApply(head -> concat(head, bytes));
+                    })
+                    .thenApplyAsync(bytes -> {
+                        tail = bytes;
+                        try {
+                            return plan();
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, io)
+                    .thenCompose(planned -> planned ? fetchAll() : CompletableFuture.completedFuture(false))
+                    .thenApplyAsync(fetched -> {
+                        if (!fetched) {
+                            return false;
+                        }
+                        try {
+                            return finish(start);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, io);
+        }
+
+        /**
+         * Offset of the central directory within the remote jar if bytes
+         * (the jar's tail) hold all of it, otherwise -(offset + 1)
+         */
+        private long centralDirectoryOffset(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int eocd = findEocd(buffer);
+            if (eocd < 0) {
+                throw new CompletionException(new IOException("No end of central directory in " + url));
+            }
+            long offset = buffer.getInt(eocd + 16) & 0xFFFFFFFFL;
+            if (offset >= size) {
+                throw new CompletionException(new IOException("Bad central directory offset in " + url));
+            }
+            long tailOffset = size - bytes.length;
+            return offset >= tailOffset ? offset - tailOffset : -(offset + 1);
+        }
+
+        /**
+         * Match remote entries against the neighbour and copy the reusable
+         * ones into place; false if too little can be reused
+         */
+        private boolean plan() throws IOException {
+            ByteBuffer remoteTail = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+            List<Entry> remote = readCentralDirectory(remoteTail, size - tail.length);
+            remote.sort(Comparator.comparingLong(entry -> entry.offset));
+            long cdOffset = remoteTail.getInt(findEocd(remoteTail) + 16) & 0xFFFFFFFFL;
+
+            try (FileChannel source = FileChannel.open(neighbour, StandardOpenOption.READ)) {
+                Map<String, Entry> local = indexNeighbour(source);
+
+                // Spans between consecutive local header offsets cover everything before the central directory
+                List<long[]> spans = new ArrayList<>(); // start, end, reuse (1) or fetch (0)
+                List<Entry[]> copies = new ArrayList<>();
+                long position = 0;
+                for (int i = 0; i <= remote.size(); i++) {
+                    long next = i < remote.size() ? remote.get(i).offset : cdOffset;
+                    if (next > position) {
+                        spans.add(new long[] {position, next, 0});
+                        copies.add(null);
+                    }
+                    if (i == remote.size()) {
+                        break;
+                    }
+                    Entry entry = remote.get(i);
+                    long end = i + 1 < remote.size() ? remote.get(i + 1).offset : cdOffset;
+                    Entry match = (entry.flags & FLAG_DATA_DESCRIPTOR) == 0 ? local.get(entry.key()) : null;
+                    boolean reuse = match != null
+                            && end - entry.offset == LOC_SIZE + entry.name.length + match.localExtra.length + entry.compressedSize;
+                    spans.add(new long[] {entry.offset, end, reuse ? 1 : 0});
+                    copies.add(reuse ? new Entry[] {entry, match} : null);
+                    position = end;
+                }
+                coalesce(spans);
+
+                long reusable = 0;
+                for (long[] span : spans) {
+                    if (span[2] == 1) {
+                        reusable += Math.min(span[1], tailStart) - Math.min(span[0], tailStart);
+                    }
+                }
+                if (reusable * 100 < size * MIN_REUSE_PERCENT) {
+                    LOGGER.info("Delta update of " + version + " skipped: " + neighbour.getFileName()
+                            + " shares only " + reusable * 100 / size + "% of it");
+                    return false;
+                }
+
+                Files.createDirectories(target.getParent());
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    for (int i = 0; i < spans.size(); i++) {
+                        long[] span = spans.get(i);
+                        if (span[2] == 1) {
+                            Entry[] pair = copies.get(i);
+                            copyEntry(source, out, pair[0], pair[1]);
+                        } else if (span[0] < tailStart) {
+                            addFetch(span[0], Math.min(span[1], tailStart));
+                        }
+                        if (progress.isCancelled()) {
+                            throw new InterruptedIOException("Delta update cancelled: " + version);
+                        }
+                    }
+                }
+            }
+            reusedBytes = size - tail.length - pendingBytes();
+            progress.skipBytes(reusedBytes);
+            return true;
+        }
+
+        /**
+         * Fetch runs that are reusable but shorter than MERGE_GAP together
+         * with their neighbours; copying them saves less than a request costs
+         */
+        private void coalesce(List<long[]> spans) {
+            for (int i = 1; i + 1 < spans.size(); i++) {
+                long[] span = spans.get(i);
+                if (span[2] == 1 && spans.get(i - 1)[2] == 0 && spans.get(i + 1)[2] == 0
+                        && span[1] - span[0] < MERGE_GAP) {
+                    span[2] = 0;
+                }
+            }
+        }
+
+        private void addFetch(long start, long end) {
+            long[] last = fetches.isEmpty() ? null : fetches.get(fetches.size() - 1);
+            if (last != null && last[1] == start) {
+                last[1] = end;
+            } else {
+                fetches.add(new long[] {start, end});
+            }
+        }
+
+        private long pendingBytes() {
+            long total = 0;
+            for (long[] range : fetches) {
+                total += range[1] - range[0];
+            }
+            return total;
+        }
+
+        private void copyEntry(FileChannel source, FileChannel out, Entry remote, Entry local) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(LOC_SIZE + remote.name.length + local.localExtra.length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(LOC_SIG).putShort((short) remote.versionNeeded).putShort((short) remote.flags)
+                    .putShort((short) remote.method).putShort((short) remote.time).putShort((short) remote.date)
+                    .putInt((int) remote.crc).putInt((int) remote.compressedSize).putInt((int) remote.size)
+                    .putShort((short) remote.name.length).putShort((short) local.localExtra.length)
+                    .put(remote.name).put(local.localExtra).flip();
+            long position = remote.offset;
+            while (header.hasRemaining()) {
+                position += out.write(header, position);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, local.compressedSize)));
+            long from = local.dataOffset;
+            for (long remaining = local.compressedSize; remaining > 0; ) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int n = source.read(buffer, from);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of " + neighbour);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += out.write(buffer, position);
+                }
+                from += n;
+                remaining -= n;
+            }
+        }
+
+        /**
+         * Run the planned fetches on a few lanes, each writing its ranges in place
+         */
+        private CompletableFuture<Boolean> fetchAll() {
+            List<CompletableFuture<Void>> lanes = new ArrayList<>();
+            for (int lane = 0; lane < Math.min(MAX_PARALLEL_RANGES, fetches.size()); lane++) {
+                CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+                for (int i = lane; i < fetches.size(); i += MAX_PARALLEL_RANGES) {
+                    long[] range = fetches.get(i);
+                    chain = chain.thenCompose(ignored -> fetchInto(range[0], range[1]));
+                }
+                lanes.add(chain);
+            }
+            return CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> true);
+        }
+
+        private CompletableFuture<Void> fetchInto(long start, long end) {
+            return exchange(start, end).thenAcceptAsync(response -> {
+                try (InputStream in = response.body();
+                     FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    long position = start;
+                    int n;
+                    while (position < end && (n = in.read(buffer, 0, (int) Math.min(buffer.length, end - position))) > 0) {
+                        if (progress.isCancelled()) {
+                            throw new InterruptedIOException("Delta update cancelled: " + version);
+                        }
+                        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                        while (chunk.hasRemaining()) {
+                            position += out.write(chunk, position);
+                        }
+                        received(n);
+                    }
+                    if (position != end) {
+                        throw new IOException("Short range response from " + url);
+                    }
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, io);
+        }
+
+        private CompletableFuture<byte[]> fetch(long start, long end) {
+            return exchange(start, end).thenApplyAsync(response -> {
+                try (InputStream in = response.body()) {
+                    byte[] bytes = in.readNBytes((int) (end - start));
+                    received(bytes.length);
+                    if (bytes.length != end - start) {
+                        throw new IOException("Short range response from " + url);
+                    }
+                    return bytes;
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, io);
+        }
+
+        /**
+         * GET bytes [start, end) of the remote jar; only a matching 206 is accepted
+         */
+        private CompletableFuture<HttpResponse<InputStream>> exchange(long start, long end) {
+            if (progress.isCancelled()) {
+                return CompletableFuture.failedFuture(new InterruptedIOException("Delta update cancelled: " + version));
+            }
+            LauncherHttpClient client = LauncherHttpClient.shared();
+            HttpRequest request = client.request(url)
+                    .setHeader("Accept-Encoding", "identity")
+                    .header("Range", "bytes=" + start + "-" + (end - 1))
+                    .build();
+            return progress.track(client.send(request)).thenApply(response -> {
+                String range = response.headers().firstValue("Content-Range").orElse("");
+                if (response.statusCode() != 206 || !range.equals("bytes " + start + "-" + (end - 1) + "/" + size)) {
+                    if (response.statusCode() == 200) {
+                        NO_RANGE_HOSTS.add(host(url));
+                    }
+                    try {
+                        response.body().close();
+                    } catch (IOException ignored) {
+                        // The response is abandoned either way
+                    }
+                    throw new CompletionException(new IOException("No range support for " + url
+                            + " (HTTP " + response.statusCode() + ")"));
+                }
+                return response;
+            });
+        }
+
+        private synchronized void received(int count) {
+            fetchedBytes += count;
+            progress.onBytes(count);
+        }
+
+        private boolean finish(long start) throws IOException {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(tail);
+                long position = size - tail.length;
+                while (buffer.hasRemaining()) {
+                    position += out.write(buffer, position);
+                }
+                out.truncate(size);
+            }
+            if (!FileHasher.matches(temp, sha1, size)) {
+                throw new IOException("Rebuilt jar does not match the SHA-1 of " + version);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ledger.recordWrite(target);
+            progress.onFileDone();
+            LOGGER.info(String.format("Delta-updated %s from %s: fetched %.1f of %.1f MB in %d ms", version,
+                    neighbour.getFileName(), fetchedBytes / 1048576.0, size / 1048576.0,
+                    (System.nanoTime() - start) / 1_000_000));
+            return true;
+        }
+
+        /**
+         * Drop the partial jar and hand the displayed progress back to the full
+         * download; the fetched bytes still count toward the byte limit
+         */
+        void undo() {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                LOGGER.fine("Failed to delete " + temp + ": " + e.getMessage());
+            }
+            progress.discardBytes(fetchedBytes);
+            progress.addTotal(0, reusedBytes);
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * Position of the end of central directory record, -1 if absent or
+     * if the jar needs ZIP64
+     */
+    private static int findEocd(ByteBuffer buffer) {
+        for (int i = buffer.limit() - EOCD_SIZE; i >= Math.max(0, buffer.limit() - EOCD_SIZE - 0xFFFF); i--) {
+            if (buffer.getInt(i) == EOCD_SIG && i + EOCD_SIZE + (buffer.getShort(i + 20) & 0xFFFF) == buffer.limit()) {
+                if (i >= 20 && buffer.getInt(i - 20) == ZIP64_LOCATOR_SIG) {
+                    return -1;
+                }
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Central directory entries; buffer holds the end of a zip whose first
+     * byte is at offset bufferStart and includes the whole central directory
+     */
+    private static List<Entry> readCentralDirectory(ByteBuffer buffer, long bufferStart) throws IOException {
+        int eocd = findEocd(buffer);
+        if (eocd < 0) {
+            throw new IOException("No usable end of central directory");
+        }
+        int count = buffer.getShort(eocd + 10) & 0xFFFF;
+        long cdOffset = buffer.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (cdOffset < bufferStart) {
+            throw new IOException("Central directory outside the fetched range");
+        }
+        List<Entry> entries = new ArrayList<>(count);
+        int position = (int) (cdOffset - bufferStart);
+        for (int i = 0; i < count; i++) {
+            if (position + CEN_SIZE > eocd || buffer.getInt(position) != CEN_SIG) {
+                throw new IOException("Corrupt central directory");
+            }
+            Entry entry = new Entry();
+            entry.versionNeeded = buffer.getShort(position + 6) & 0xFFFF;
+            entry.flags = buffer.getShort(position + 8) & 0xFFFF;
+            entry.method = buffer.getShort(position + 10) & 0xFFFF;
+            entry.time = buffer.getShort(position + 12) & 0xFFFF;
+            entry.date = buffer.getShort(position + 14) & 0xFFFF;
+            entry.crc = buffer.getInt(position + 16) & 0xFFFFFFFFL;
+            entry.compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+            entry.size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            entry.offset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+            if (entry.compressedSize == 0xFFFFFFFFL || entry.size == 0xFFFFFFFFL || entry.offset == 0xFFFFFFFFL) {
+                throw new IOException("ZIP64 entries are not supported");
+            }
+            entry.name = new byte[nameLength];
+            buffer.duplicate().position(position + CEN_SIZE).get(entry.name);
+            entries.add(entry);
+            position += CEN_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Entries of the neighbour's jar by content key, with the extra field
+     * and data position from their local headers
+     */
+    private static Map<String, Entry> indexNeighbour(FileChannel channel) throws IOException {
+        long length = channel.size();
+        int tailLength = (int) Math.min(length, TAIL_GUESS);
+        ByteBuffer tail = read(channel, length - tailLength, tailLength);
+        int eocd = findEocd(tail);
+        if (eocd < 0) {
+            throw new IOException("Installed jar has no usable central directory");
+        }
+        long cdOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        long start = Math.min(cdOffset, length - tailLength);
+        if (start < length - tailLength) {
+            tail = read(channel, start, (int) (length - start));
+        }
+
+        Map<String, Entry> index = new HashMap<>();
+        ByteBuffer header = ByteBuffer.allocate(LOC_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (Entry entry : readCentralDirectory(tail, start)) {
+            header.clear();
+            if (channel.read(header, entry.offset) != LOC_SIZE || header.getInt(0) != LOC_SIG) {
+                continue;
+            }
+            int nameLength = header.getShort(26) & 0xFFFF;
+            int extraLength = header.getShort(28) & 0xFFFF;
+            entry.localExtra = read(channel, entry.offset + LOC_SIZE + nameLength, extraLength).array();
+            entry.dataOffset = entry.offset + LOC_SIZE + nameLength + extraLength;
+            if (entry.dataOffset + entry.compressedSize <= length) {
+                index.putIfAbsent(entry.key(), entry);
+            }
+        }
+        return index;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.clear();
+    }
+
+    private static final class Entry {
+        int versionNeeded;
+        int flags;
+        int method;
+        int time;
+        int date;
+        long crc;
+        long compressedSize;
+        long size;
+        long offset;
+        byte[] name;
+        byte[] localExtra;
+        long dataOffset;
+
+        /**
+         * Entries with this key have the same compressed bytes, barring a
+         * CRC collision that the final SHA-1 check catches
+         */
+        String key() {
+            return crc + ":" + compressedSize + ":" + size + ":" + method;
+        }
+
+        @Override
+        public String toString() {
+            return new String(name, StandardCharsets.UTF_8);
+        }
+    }
+}
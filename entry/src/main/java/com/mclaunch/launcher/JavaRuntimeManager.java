@@ -0,0 +1,877 @@
+package com.mclaunch.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Installed Java runtimes and the choice of one per game version
+ * Runtimes are unpacked under runtimes/ from local archives or a mirror
+ * (.zip, .tar.gz); JVMs under /usr/lib/jvm, JAVA_HOME and the java on the
+ * PATH are used as well. Each runtime is described from its release file
+ * and libjvm location, without starting it.
+ */
+public class JavaRuntimeManager {
+    private static final String MINECRAFT_DIR = "/data/storage/el2/base/minecraft";
+    private static final List<String> SYSTEM_JVM_DIRS = List.of("/usr/lib/jvm", "/usr/java", "/opt/java");
+    private static final long VERSION_PROBE_TIMEOUT_MS = 5000;
+    private static final Pattern VERSION_OUTPUT = Pattern.compile("version \"([^\"]+)\"");
+    private static final Logger LOGGER = Logger.getLogger(JavaRuntimeManager.class.getName());
+    // Installs wait on extraction; extraction work never waits, so the pools cannot starve each other
+    private static final ExecutorService INSTALL_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "runtime-install");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService EXTRACT_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread thread = new Thread(r, "runtime-extract");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Path runtimesDir;
+    private List<JavaRuntime> runtimes; // guarded by this, null until scanned
+
+    public JavaRuntimeManager() {
+        this(MINECRAFT_DIR);
+    }
+
+    public JavaRuntimeManager(String minecraftDir) {
+        this.runtimesDir = Paths.get(minecraftDir, "runtimes");
+    }
+
+    /**
+     * Java major version a game version needs: javaVersion from its JSON,
+     * else a guess from the release number (8 up to 1.16, 17 from 1.18,
+     * 21 from 1.20.5), else 0 for "any"
+     */
+    public static int requiredMajor(String version, VersionMetadata metadata) {
+        if (metadata != null && metadata.getJavaMajorVersion() > 0) {
+            return metadata.getJavaMajorVersion();
+        }
+        String id = metadata != null && metadata.getJarVersion() != null ? metadata.getJarVersion() : version;
+        Matcher release = Pattern.compile("^1\\.(\\d+)(?:\\.(\\d+))?").matcher(id != null ? id : "");
+        if (!release.find()) {
+            return 0;
+        }
+        int minor = Integer.parseInt(release.group(1));
+        int patch = release.group(2) != null ? Integer.parseInt(release.group(2)) : 0;
+        if (minor <= 16) {
+            return 8;
+        }
+        if (minor == 17) {
+            return 16;
+        }
+        return minor > 20 || (minor == 20 && patch >= 5) ? 21 : 17;
+    }
+
+    /**
+     * All usable runtimes, scanned on first use
+     */
+    public synchronized List<JavaRuntime> getRuntimes() {
+        if (runtimes == null) {
+            runtimes = scan();
+        }
+        return Collections.unmodifiableList(runtimes);
+    }
+
+    /**
+     * Forget the scan, e.g. after a JDK was installed outside the launcher
+     */
+    public synchronized void rescan() {
+        runtimes = null;
+    }
+
+    /**
+     * Fastest runtime of the required major version, or null if there is none
+     * Java 16 and later games also run on a newer runtime when the exact
+     * version is missing; Java 8 games only run on Java 8. Among candidates a
+     * HotSpot server VM for this CPU wins, then one with a default CDS
+     * archive, then the newest update.
+     */
+    public JavaRuntime select(int requiredMajor) {
+        List<JavaRuntime> candidates = new ArrayList<>();
+        for (JavaRuntime runtime : getRuntimes()) {
+            if (requiredMajor <= 0 || runtime.getMajorVersion() == requiredMajor) {
+                candidates.add(runtime);
+            }
+        }
+        if (candidates.isEmpty() && requiredMajor >= 16) {
+            int closest = Integer.MAX_VALUE;
+            for (JavaRuntime runtime : getRuntimes()) {
+                if (runtime.getMajorVersion() > requiredMajor) {
+                    closest = Math.min(closest, runtime.getMajorVersion());
+                }
+            }
+            for (JavaRuntime runtime : getRuntimes()) {
+                if (runtime.getMajorVersion() == closest) {
+                    candidates.add(runtime);
+                }
+            }
+        }
+        return candidates.stream()
+                .max(Comparator.comparingInt(JavaRuntime::speedScore)
+                        .thenComparingInt(JavaRuntime::getMajorVersion)
+                        .thenComparing(JavaRuntime::getVersion, JavaRuntimeManager::compareVersions))
+                .orElse(null);
+    }
+
+    /**
+     * Runtime owning a java executable, e.g. a path the user configured
+     */
+    public JavaRuntime probeExecutable(Path java) {
+        try {
+            Path real = java.toRealPath();
+            return probe(real.getParent().getParent(), false);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("Not a usable Java runtime: " + java + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    /**
+     * Unpack runtime archives, all at once, into runtimes/
+     */
+    public CompletableFuture<List<JavaRuntime>> installAll(Collection<Path> archives) {
+        List<CompletableFuture<JavaRuntime>> installs = new ArrayList<>();
+        for (Path archive : archives) {
+            installs.add(install(archive));
+        }
+        return CompletableFuture.allOf(installs.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    List<JavaRuntime> installed = new ArrayList<>();
+                    for (CompletableFuture<JavaRuntime> install : installs) {
+                        installed.add(install.join());
+                    }
+                    return installed;
+                });
+    }
+
+    /**
+     * Unpack one runtime archive (.zip, .tar.gz or .tgz) into runtimes/;
+     * an archive that was installed before is not unpacked again
+     */
+    public CompletableFuture<JavaRuntime> install(Path archive) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return installArchive(archive);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, INSTALL_EXECUTOR);
+    }
+
+    /**
+     * Download a runtime archive from a mirror and install it
+     */
+    public CompletableFuture<JavaRuntime> installFromMirror(AssetManager assets, String url, String sha1) {
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        Path archive = runtimesDir.resolve(".downloads").resolve(name);
+        return assets.downloadFileAsync(url, archive, sha1).thenCompose(ok -> {
+            if (!ok) {
+                throw new CompletionException(new IOException("Failed to download Java runtime " + url));
+            }
+            return install(archive).whenComplete((runtime, error) -> {
+                try {
+                    Files.deleteIfExists(archive);
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to remove runtime archive " + archive + ": " + e.getMessage());
+                }
+            });
+        });
+    }
+
+    private JavaRuntime installArchive(Path archive) throws IOException {
+        String fileName = archive.getFileName().toString();
+        String name = fileName.replaceFirst("(?i)(\\.tar\\.gz|\\.tgz|\\.zip)$", "");
+        if (name.equals(fileName)) {
+            throw new IOException("Unsupported runtime archive: " + archive);
+        }
+        Path target = runtimesDir.resolve(name);
+        if (!Files.isDirectory(target)) {
+            long start = System.nanoTime();
+            Files.createDirectories(runtimesDir);
+            Path staging = Files.createTempDirectory(runtimesDir, ".extract-" + name + "-");
+            try {
+                if (fileName.toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                    extractZip(archive, staging);
+                } else {
+                    extractTarGz(archive, staging);
+                }
+                Files.move(singleChild(staging), target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileSystemException e) {
+                // Moving onto a non-empty directory fails with "Directory not empty", not FileAlreadyExists
+                if (!Files.isDirectory(target)) {
+                    throw e;
+                }
+                // Installed concurrently from another copy of the archive
+            } finally {
+                deleteTree(staging);
+            }
+            LOGGER.info(String.format("Installed Java runtime %s in %d ms", name,
+                    (System.nanoTime() - start) / 1_000_000));
+        }
+        JavaRuntime runtime = probe(target, true);
+        if (runtime == null) {
+            deleteTree(target);
+            throw new IOException(archive + " does not contain a Java runtime");
+        }
+        rescan();
+        return runtime;
+    }
+
+    /**
+     * Archives usually wrap the runtime in one top directory (jdk-17.0.9+9-jre/)
+     */
+    private static Path singleChild(Path dir) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        }
+        if (children.size() == 1 && Files.isDirectory(children.get(0))) {
+            return singleChild(children.get(0));
+        }
+        if (Files.exists(dir.resolve("bin"))) {
+            return dir;
+        }
+        throw new IOException("No runtime directory in archive");
+    }
+
+    /**
+     * Zip entries have random access, so they are unpacked by all extract threads
+     */
+    private static void extractZip(Path archive, Path target) throws IOException {
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            List<ZipEntry> files = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path path = resolveInside(target, entry.getName());
+                if (entry.isDirectory()) {
+                    createDirectoriesInside(target, path);
+                } else {
+                    files.add(entry);
+                }
+            }
+            int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.size() / 64));
+            List<CompletableFuture<Void>> parts = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                int first = w;
+                parts.add(CompletableFuture.runAsync(() -> {
+                    for (int i = first; i < files.size(); i += workers) {
+                        ZipEntry entry = files.get(i);
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            writeFile(target, resolveInside(target, entry.getName()), in,
+                                    defaultMode(entry.getName()));
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                }, EXTRACT_EXECUTOR));
+            }
+            try {
+                CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Zip entries carry no Unix mode here; launchers and helpers must be executable
+     */
+    private static int defaultMode(String name) {
+        boolean executable = name.contains("/bin/") || name.startsWith("bin/")
+                || name.endsWith("/jspawnhelper") || name.endsWith("/jexec");
+        return executable ? 0755 : 0644;
+    }
+
+    /**
+     * Minimal ustar/GNU tar reader: regular files, directories, symbolic and
+     * hard links, long names and Unix modes
+     */
+    private static void extractTarGz(Path archive, Path target) throws IOException {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(archive), 1 << 16),
+                1 << 16)) {
+            byte[] header = new byte[512];
+            String longName = null;
+            String longLink = null;
+            while (readFully(in, header)) {
+                if (isZeroBlock(header)) {
+                    break;
+                }
+                String name = longName != null ? longName : tarString(header, 0, 100);
+                String prefix = tarString(header, 345, 155);
+                if (longName == null && !prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+                String link = longLink != null ? longLink : tarString(header, 157, 100);
+                longName = null;
+                longLink = null;
+                int mode = (int) tarNumber(header, 100, 8);
+                long size = tarNumber(header, 124, 12);
+                char type = (char) header[156];
+
+                if (type == 'L' || type == 'K') {
+                    byte[] data = readBlocks(in, size);
+                    String value = new String(data, 0, (int) size, StandardCharsets.UTF_8).replace("\0", "");
+                    if (type == 'L') {
+                        longName = value;
+                    } else {
+                        longLink = value;
+                    }
+                    continue;
+                }
+                if (type == 'x' || type == 'g') {
+                    // Pax headers: only the long path matters here
+                    String pax = new String(readBlocks(in, size), 0, (int) size, StandardCharsets.UTF_8);
+                    Matcher path = Pattern.compile("\\d+ path=([^\n]*)\n").matcher(pax);
+                    if (type == 'x' && path.find()) {
+                        longName = path.group(1);
+                    }
+                    continue;
+                }
+
+                Path path = resolveInside(target, name);
+                if (type == '5') {
+                    createDirectoriesInside(target, path);
+                } else if (type == '2') {
+                    // Relative to the link's directory; a link out of target would let later entries escape
+                    Path linkTarget = Paths.get(link);
+                    if (linkTarget.isAbsolute() || !path.getParent().resolve(linkTarget).normalize().startsWith(target)) {
+                        throw new IOException("Archive link outside target: " + name + " -> " + link);
+                    }
+                    createDirectoriesInside(target, path.getParent());
+                    Files.deleteIfExists(path);
+                    Files.createSymbolicLink(path, linkTarget);
+                } else if (type == '1') {
+                    Path source = resolveInside(target, link);
+                    if (!Files.isRegularFile(source) || !source.toRealPath().startsWith(target.toRealPath())) {
+                        throw new IOException("Archive link outside target: " + name + " -> " + link);
+                    }
+                    createDirectoriesInside(target, path.getParent());
+                    Files.copy(source, path, StandardCopyOption.REPLACE_EXISTING);
+                } else if (type == '0' || type == '\0' || type == '7') {
+                    writeFile(target, path, new BoundedInputStream(in, size), mode & 0777);
+                    skipPadding(in, size);
+                } else {
+                    skipFully(in, paddedSize(size));
+                }
+            }
+        }
+    }
+
+    private static void writeFile(Path target, Path path, InputStream in, int mode) throws IOException {
+        createDirectoriesInside(target, path.getParent());
+        if (Files.isSymbolicLink(path)) {
+            // Replace the link itself rather than write through it
+            Files.delete(path);
+        }
+        Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            Files.setPosixFilePermissions(path, toPermissions(mode != 0 ? mode : 0644));
+        } catch (UnsupportedOperationException e) {
+            path.toFile().setExecutable((mode & 0111) != 0);
+        }
+    }
+
+    private static Set<PosixFilePermission> toPermissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        PosixFilePermission[] bits = {
+                PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_READ,
+                PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+                PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ};
+        for (int i = 0; i < bits.length; i++) {
+            if ((mode & (1 << i)) != 0) {
+                permissions.add(bits[i]);
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * Reject entries that would land outside the target directory
+     */
+    private static Path resolveInside(Path target, String name) throws IOException {
+        Path path = target.resolve(name).normalize();
+        if (!path.startsWith(target)) {
+            throw new IOException("Archive entry outside target: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * Create dir unless an existing ancestor is a symlink leading out of
+     * target; resolveInside only checks the path as text
+     */
+    private static void createDirectoriesInside(Path target, Path dir) throws IOException {
+        Path existing = dir;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null || !existing.toRealPath().startsWith(target.toRealPath())) {
+            throw new IOException("Archive entry outside target: " + dir);
+        }
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir);
+        }
+        if (!dir.toRealPath().startsWith(target.toRealPath())) {
+            throw new IOException("Archive entry outside target: " + dir);
+        }
+    }
+
+    private static boolean readFully(InputStream in, byte[] buffer) throws IOException {
+        int read = in.readNBytes(buffer, 0, buffer.length);
+        if (read == 0) {
+            return false;
+        }
+        if (read < buffer.length) {
+            throw new IOException("Truncated tar archive");
+        }
+        return true;
+    }
+
+    private static byte[] readBlocks(InputStream in, long size) throws IOException {
+        byte[] data = new byte[(int) paddedSize(size)];
+        if (in.readNBytes(data, 0, data.length) < data.length) {
+            throw new IOException("Truncated tar archive");
+        }
+        return data;
+    }
+
+    private static long paddedSize(long size) {
+        return (size + 511) / 512 * 512;
+    }
+
+    private static void skipPadding(InputStream in, long size) throws IOException {
+        skipFully(in, paddedSize(size) - size);
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Truncated tar archive");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String tarString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long tarNumber(byte[] header, int offset, int length) {
+        if ((header[offset] & 0x80) != 0) {
+            // GNU base-256 encoding for large values
+            long value = 0;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+            return value;
+        }
+        String text = tarString(header, offset, length).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text, 8);
+    }
+
+    private List<JavaRuntime> scan() {
+        long start = System.nanoTime();
+        Map<Path, JavaRuntime> found = new LinkedHashMap<>();
+        List<Path> homes = new ArrayList<>();
+        homes.addAll(listDirectories(runtimesDir));
+        for (String dir : SYSTEM_JVM_DIRS) {
+            homes.addAll(listDirectories(Paths.get(dir)));
+        }
+        String javaHome = System.getenv("JAVA_HOME");
+        if (javaHome != null) {
+            homes.add(Paths.get(javaHome));
+        }
+        Path onPath = findOnPath("java");
+        if (onPath != null) {
+            try {
+                homes.add(onPath.toRealPath().getParent().getParent());
+            } catch (IOException e) {
+                // Dangling link, nothing to add
+            }
+        }
+        for (Path home : homes) {
+            try {
+                Path real = home.toRealPath();
+                if (!found.containsKey(real) && !real.getFileName().toString().startsWith(".")) {
+                    JavaRuntime runtime = probe(real, real.startsWith(runtimesDir.toAbsolutePath()));
+                    if (runtime != null) {
+                        found.put(real, runtime);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "Skipping Java home " + home, e);
+            }
+        }
+        LOGGER.info(String.format("Found %d Java runtimes in %d ms", found.size(),
+                (System.nanoTime() - start) / 1_000_000));
+        return new ArrayList<>(found.values());
+    }
+
+    private static List<Path> listDirectories(Path dir) {
+        List<Path> dirs = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+                for (Path child : stream) {
+                    dirs.add(child);
+                }
+            } catch (IOException e) {
+                LOGGER.warning("Failed to list " + dir + ": " + e.getMessage());
+            }
+        }
+        return dirs;
+    }
+
+    private static Path findOnPath(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            Path candidate = Paths.get(dir, name);
+            if (Files.isExecutable(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Describe a Java home from its release file and libjvm, falling back to
+     * running java -version when the release file is missing
+     */
+    private static JavaRuntime probe(Path home, boolean managed) throws IOException {
+        Path java = home.resolve("bin").resolve("java");
+        if (!Files.isExecutable(java)) {
+            return null;
+        }
+        Map<String, String> release = readRelease(home.resolve("release"));
+        String version = release.get("JAVA_VERSION");
+        if (version == null) {
+            version = runVersion(java);
+            if (version == null) {
+                return null;
+            }
+        }
+        Path libjvm = findLibjvm(home);
+        String arch = release.getOrDefault("OS_ARCH", System.getProperty("os.arch", ""));
+        String variant = libjvm != null ? libjvm.getParent().getFileName().toString() : "unknown";
+        boolean openJ9 = "openj9".equalsIgnoreCase(release.get("JVM_VARIANT"))
+                || (libjvm != null && Files.exists(libjvm.getParent().resolve("libj9vm29.so")));
+        return new JavaRuntime(home, java, version, release.getOrDefault("IMPLEMENTOR", "unknown"), arch,
+                openJ9 ? "openj9" : variant,
+                libjvm != null && Files.exists(libjvm.getParent().resolve("classes.jsa")), managed);
+    }
+
+    private static Map<String, String> readRelease(Path file) {
+        Map<String, String> values = new HashMap<>();
+        if (!Files.isRegularFile(file)) {
+            return values;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    values.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim().replace("\"", ""));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to read " + file + ": " + e.getMessage());
+        }
+        return values;
+    }
+
+    private static String runVersion(Path java) {
+        try {
+            Process process = new ProcessBuilder(java.toString(), "-version").redirectErrorStream(true).start();
+            StringBuilder output = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    output.append(line).append('\n');
+                }
+            }
+            if (!process.waitFor(VERSION_PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                return null;
+            }
+            Matcher matcher = VERSION_OUTPUT.matcher(output);
+            return matcher.find() ? matcher.group(1) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static Path findLibjvm(Path home) throws IOException {
+        try (Stream<Path> files = Files.find(home, 5,
+                (path, attrs) -> path.getFileName().toString().equals("libjvm.so"))) {
+            // The server VM when a JDK 8 ships both client and server
+            return files.min(Comparator.comparing(path -> path.getParent().getFileName().toString().equals("server")
+                    ? 0 : 1)).orElse(null);
+        }
+    }
+
+    /**
+     * Numeric comparison of version strings such as 1.8.0_392 and 17.0.9
+     */
+    static int compareVersions(String a, String b) {
+        String[] left = a.split("[^0-9]+");
+        String[] right = b.split("[^0-9]+");
+        for (int i = 0; i < Math.max(left.length, right.length); i++) {
+            long l = i < left.length && !left[i].isEmpty() ? Long.parseLong(left[i]) : 0;
+            long r = i < right.length && !right[i].isEmpty() ? Long.parseLong(right[i]) : 0;
+            if (l != r) {
+                return Long.compare(l, r);
+            }
+        }
+        return 0;
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Reads at most limit bytes of the underlying stream, which stays open
+     */
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The tar stream continues after this entry
+        }
+    }
+
+    /**
+     * One Java installation and what its JVM supports
+     */
+    public static class JavaRuntime {
+        private final Path home;
+        private final Path executable;
+        private final String version;
+        private final int majorVersion;
+        private final String vendor;
+        private final String arch;
+        private final String vmVariant;
+        private final boolean defaultCdsArchive;
+        private final boolean managed;
+
+        JavaRuntime(Path home, Path executable, String version, String vendor, String arch, String vmVariant,
+                    boolean defaultCdsArchive, boolean managed) {
+            this.home = home;
+            this.executable = executable;
+            this.version = version;
+            this.majorVersion = parseMajor(version);
+            this.vendor = vendor;
+            this.arch = arch;
+            this.vmVariant = vmVariant;
+            this.defaultCdsArchive = defaultCdsArchive;
+            this.managed = managed;
+        }
+
+        private static int parseMajor(String version) {
+            String[] parts = version.split("[^0-9]+");
+            if (parts.length == 0 || parts[0].isEmpty()) {
+                return 0;
+            }
+            int first = Integer.parseInt(parts[0]);
+            return first == 1 && parts.length > 1 ? Integer.parseInt(parts[1]) : first;
+        }
+
+        public Path getHome() { return home; }
+        public Path getExecutable() { return executable; }
+        public String getVersion() { return version; }
+        public int getMajorVersion() { return majorVersion; }
+        public String getVendor() { return vendor; }
+        public String getArch() { return arch; }
+
+        /**
+         * VM flavour: server, client, zero (interpreter only) or openj9
+         */
+        public String getVmVariant() { return vmVariant; }
+
+        /**
+         * Unpacked by this launcher rather than installed on the system
+         */
+        public boolean isManaged() { return managed; }
+
+        public boolean isHotSpotServer() {
+            return "server".equals(vmVariant);
+        }
+
+        /**
+         * Runs natively on this CPU rather than under emulation
+         */
+        public boolean isNativeArch() {
+            return normalizeArch(arch).equals(normalizeArch(System.getProperty("os.arch", "")));
+        }
+
+        /**
+         * -Xlog unified logging (Java 9+); Java 8 only knows -Xloggc
+         */
+        public boolean supportsUnifiedLogging() {
+            return majorVersion >= 9;
+        }
+
+        /**
+         * JDK classes are mapped from a shared archive at startup (default CDS)
+         */
+        public boolean hasDefaultCdsArchive() {
+            return defaultCdsArchive;
+        }
+
+        /**
+         * -XX:+AutoCreateSharedArchive keeps a per-application CDS archive (JDK 19+)
+         */
+        public boolean supportsAutoCds() {
+            return isHotSpotServer() && majorVersion >= 19;
+        }
+
+        /**
+         * ZGC is production ready from JDK 15 on x86-64 and AArch64 Linux
+         */
+        public boolean supportsZgc() {
+            String normalized = normalizeArch(arch);
+            return isHotSpotServer() && majorVersion >= 15
+                    && (normalized.equals("x86_64") || normalized.equals("aarch64"));
+        }
+
+        /**
+         * Generational ZGC: opt-in on JDK 21 and 22, the only mode from JDK 23
+         */
+        public boolean supportsGenerationalZgc() {
+            return supportsZgc() && majorVersion >= 21;
+        }
+
+        int speedScore() {
+            return (isHotSpotServer() ? 4 : 0) + (isNativeArch() ? 2 : 0) + (defaultCdsArchive ? 1 : 0);
+        }
+
+        private static String normalizeArch(String arch) {
+            String lower = arch.toLowerCase(Locale.ROOT);
+            if (lower.equals("amd64") || lower.equals("x64")) {
+                return "x86_64";
+            }
+            return lower.equals("arm64") ? "aarch64" : lower;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Java %s (%s, %s %s%s) at %s", version, vendor, vmVariant, arch,
+                    defaultCdsArchive ? ", CDS" : "", home);
+        }
+    }
+}
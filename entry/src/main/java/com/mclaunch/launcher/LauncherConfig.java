@@ -7,14 +7,20 @@ import java.util.UUID;
  */
 public class LauncherConfig {
     private String username = "Player";
-    private String uuid = UUID.randomUUID().toString().replace("-", "");
+    private String uuid; // generated on first use, SecureRandom seeding is slow on cold start
     private String accessToken = "0";
     private int maxMemory = 2048; // MB
     private int minMemory = 512;  // MB
     private boolean fullscreen = false;
     private int windowWidth = 854;
     private int windowHeight = 480;
-    private String javaPath = "java";
+    private String javaPath = "java"; // "java" lets JavaRuntimeManager pick a runtime per version
+    private boolean useZgc = false; // low-pause ZGC where the selected runtime supports it
+    private int logBudgetMb = 256; // disk budget for stored game logs
+    private int storageBudgetMb = 8192; // disk budget for versions, libraries and assets
+    private String classpathMode = "direct"; // direct, manifest or merged (see ClasspathPacker)
+    private int prefetchBudgetMb = 1024; // bytes one idle prefetch pass may download
+    private boolean deltaUpdates = true; // build client jars from an installed neighbour (see JarDeltaInstaller)
     
     public LauncherConfig() {
         // Load configuration from file if exists
@@ -39,11 +45,14 @@ public class LauncherConfig {
         this.username = username;
     }
     
-    public String getUuid() {
+    public synchronized String getUuid() {
+        if (uuid == null) {
+            uuid = UUID.randomUUID().toString().replace("-", "");
+        }
         return uuid;
     }
     
-    public void setUuid(String uuid) {
+    public synchronized void setUuid(String uuid) {
         this.uuid = uuid;
     }
     
@@ -102,4 +111,52 @@ public class LauncherConfig {
     public void setJavaPath(String javaPath) {
         this.javaPath = javaPath;
     }
+    
+    public boolean isUseZgc() {
+        return useZgc;
+    }
+    
+    public void setUseZgc(boolean useZgc) {
+        this.useZgc = useZgc;
+    }
+    
+    public int getLogBudgetMb() {
+        return logBudgetMb;
+    }
+    
+    public void setLogBudgetMb(int logBudgetMb) {
+        this.logBudgetMb = logBudgetMb;
+    }
+    
+    public int getStorageBudgetMb() {
+        return storageBudgetMb;
+    }
+    
+    public void setStorageBudgetMb(int storageBudgetMb) {
+        this.storageBudgetMb = storageBudgetMb;
+    }
+    
+    public String getClasspathMode() {
+        return classpathMode;
+    }
+    
+    public void setClasspathMode(String classpathMode) {
+        this.classpathMode = classpathMode;
+    }
+    
+    public int getPrefetchBudgetMb() {
+        return prefetchBudgetMb;
+    }
+    
+    public void setPrefetchBudgetMb(int prefetchBudgetMb) {
+        this.prefetchBudgetMb = prefetchBudgetMb;
+    }
+    
+    public boolean isDeltaUpdates() {
+        return deltaUpdates;
+    }
+    
+    public void setDeltaUpdates(boolean deltaUpdates) {
+        this.deltaUpdates = deltaUpdates;
+    }
 }
\ No newline at end of file
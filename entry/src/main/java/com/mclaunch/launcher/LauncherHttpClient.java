@@ -0,0 +1,264 @@
+package com.mclaunch.launcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Shared asynchronous HTTP client for all launcher network I/O
+ * One java.net.http client keeps pooled keep-alive connections per host,
+ * negotiates HTTP/2 where the server supports it (multiplexing small
+ * fetches over one connection) and decodes gzip bodies transparently.
+ */
+public final class LauncherHttpClient {
+    private static final String USER_AGENT = "HarmonyOS-MC-Launcher/1.0";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(15);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Logger LOGGER = Logger.getLogger(LauncherHttpClient.class.getName());
+
+    private static volatile LauncherHttpClient shared;
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+
+    private LauncherHttpClient() {
+        // Blocking body consumption runs here, never on the client's own threads
+        this.executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), r -> {
+            Thread thread = new Thread(r, "launcher-http-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * The process-wide client
+     */
+    public static LauncherHttpClient shared() {
+        LauncherHttpClient result = shared;
+        if (result == null) {
+            synchronized (LauncherHttpClient.class) {
+                result = shared;
+                if (result == null) {
+                    long start = System.nanoTime();
+                    result = new LauncherHttpClient();
+                    shared = result;
+                    StartupTimeline.global().record("LauncherHttpClient", start);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A GET request with the launcher's standard headers and timeout
+     */
+    public HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(RESPONSE_TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+    }
+
+    /**
+     * Send a request and stream the (decoded) body; non-2xx responses fail
+     * the future with an HttpStatusException
+     */
+    public CompletableFuture<HttpResponse<InputStream>> send(HttpRequest request) {
+        return send(request, null);
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> send(HttpRequest request, ByteListener listener) {
+        CompletableFuture<HttpResponse<InputStream>> exchange =
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (listener != null) {
+            // Cancelling this future aborts the request before the response arrives
+            listener.onExchange(exchange);
+        }
+        return exchange
+                .thenApply(response -> {
+                    int status = response.statusCode();
+                    if (status < 200 || status >= 300) {
+                        closeQuietly(response.body());
+                        throw new CompletionException(new HttpStatusException(request.uri().toString(), status));
+                    }
+                    return response;
+                });
+    }
+
+    /**
+     * Streaming body API: the caller reads and closes the stream
+     */
+    public CompletableFuture<InputStream> getStream(String url) {
+        return send(request(url).build()).thenApply(LauncherHttpClient::decodedBody);
+    }
+
+    public CompletableFuture<byte[]> getBytes(String url) {
+        return getStream(url).thenApplyAsync(in -> {
+            try (InputStream body = in) {
+                return body.readAllBytes();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<String> getString(String url) {
+        return getBytes(url).thenApply(bytes -> new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Download into a file; the SHA-1 (when given) is computed while streaming
+     * and the file only appears at its final path once it matches
+     */
+    public CompletableFuture<Path> download(String url, Path target, String expectedSha1) {
+        return download(request(url).build(), target, expectedSha1, null);
+    }
+
+    /**
+     * Download with a byte listener called from the transfer thread; the
+     * listener can also cancel the transfer between chunks
+     */
+    public CompletableFuture<Path> download(HttpRequest request, Path target, String expectedSha1,
+                                            ByteListener listener) {
+        return send(request, listener).thenApplyAsync(response -> {
+            Path temp = target.resolveSibling(target.getFileName() + ".part");
+            MessageDigest digest = expectedSha1 != null ? FileHasher.newDigest("SHA-1") : null;
+            try {
+                Files.createDirectories(target.getParent());
+                try (InputStream in = decodedBody(response); OutputStream out = Files.newOutputStream(temp)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        if (Thread.currentThread().isInterrupted()
+                                || (listener != null && listener.isCancelled())) {
+                            throw new InterruptedIOException("Download cancelled: " + request.uri());
+                        }
+                        out.write(buffer, 0, n);
+                        if (digest != null) {
+                            digest.update(buffer, 0, n);
+                        }
+                        if (listener != null) {
+                            listener.onBytes(n);
+                        }
+                    }
+                }
+                if (digest != null && !expectedSha1.equalsIgnoreCase(FileHasher.toHex(digest.digest()))) {
+                    throw new IOException("Checksum mismatch for " + request.uri());
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return target;
+            } catch (IOException e) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort cleanup
+                }
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Executor shared by downstream stages that do blocking I/O on responses
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    private static InputStream decodedBody(HttpResponse<InputStream> response) {
+        InputStream body = response.body();
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if (!"gzip".equalsIgnoreCase(encoding)) {
+            return body;
+        }
+        try {
+            return new GZIPInputStream(body, BUFFER_SIZE);
+        } catch (IOException e) {
+            closeQuietly(body);
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            LOGGER.fine("Failed to close response body: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unwrap the IOException behind a failed future
+     */
+    public static IOException unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+
+    /**
+     * Receives the number of bytes written by an in-progress download
+     */
+    public interface ByteListener {
+        void onBytes(int count);
+
+        /**
+         * Checked between chunks; a cancelled download fails with an
+         * InterruptedIOException and leaves no partial file
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+
+        /**
+         * The in-flight request, so that it can be aborted
+         */
+        default void onExchange(CompletableFuture<?> exchange) {
+        }
+    }
+
+    /**
+     * A non-2xx HTTP response
+     */
+    public static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int statusCode;
+
+        public HttpStatusException(String url, int statusCode) {
+            super("HTTP " + statusCode + " for " + url);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+}
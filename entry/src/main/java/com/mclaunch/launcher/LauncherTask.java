@@ -0,0 +1,92 @@
+package com.mclaunch.launcher;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Handle to an asynchronous launcher operation: its result, a progress
+ * stream and cancellation
+ */
+public class LauncherTask<T> {
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final ProgressTracker progress;
+
+    private LauncherTask(ProgressTracker progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Start an operation that reports into a new tracker
+     */
+    static <T> LauncherTask<T> start(Function<ProgressTracker, CompletableFuture<T>> operation) {
+        return start(operation, value -> { });
+    }
+
+    /**
+     * Start an operation whose result must be released if a cancel keeps it
+     * from being delivered, such as a started process
+     */
+    static <T> LauncherTask<T> start(Function<ProgressTracker, CompletableFuture<T>> operation,
+                                     Consumer<? super T> discard) {
+        LauncherTask<T> task = new LauncherTask<>(new ProgressTracker());
+        CompletableFuture<T> work;
+        try {
+            work = operation.apply(task.progress);
+        } catch (RuntimeException e) {
+            work = CompletableFuture.failedFuture(e);
+        }
+        work.whenComplete((value, error) -> {
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+            if (error == null && task.progress.isCancelled()) {
+                error = new CancellationException();
+            }
+            task.progress.finish(error);
+            boolean delivered = error != null
+                    ? task.result.completeExceptionally(error)
+                    : task.result.complete(value);
+            if (value != null && (error != null || !delivered)) {
+                discard.accept(value);
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Completes with the operation's result, or exceptionally with a
+     * CancellationException as soon as the task is cancelled
+     */
+    public CompletableFuture<T> getFuture() {
+        return result;
+    }
+
+    public Flow.Publisher<InstallProgress> getProgress() {
+        return progress.getPublisher();
+    }
+
+    public InstallProgress getSnapshot() {
+        return progress.snapshot();
+    }
+
+    /**
+     * Cancel the operation; in-flight transfers are aborted and their
+     * partial files removed
+     */
+    public boolean cancel() {
+        progress.cancel();
+        return result.completeExceptionally(new CancellationException("Cancelled"));
+    }
+
+    public boolean isCancelled() {
+        return progress.isCancelled();
+    }
+
+    ProgressTracker getTracker() {
+        return progress;
+    }
+}
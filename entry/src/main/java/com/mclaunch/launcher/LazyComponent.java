@@ -0,0 +1,47 @@
+package com.mclaunch.launcher;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * A component created on first use or by a background warm-up, whichever
+ * comes first. Creation time is recorded in the startup timeline.
+ */
+public final class LazyComponent<T> {
+    private final String name;
+    private final Supplier<T> factory;
+    private volatile T value;
+
+    public LazyComponent(String name, Supplier<T> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    long start = System.nanoTime();
+                    result = factory.get();
+                    value = result;
+                    StartupTimeline.global().record(name, start);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create the component on the given executor if nobody has needed it yet
+     */
+    public CompletableFuture<T> warmUp(Executor executor) {
+        return CompletableFuture.supplyAsync(this::get, executor);
+    }
+
+    public boolean isReady() {
+        return value != null;
+    }
+}
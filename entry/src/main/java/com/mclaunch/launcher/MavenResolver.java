@@ -0,0 +1,429 @@
+package com.mclaunch.launcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Resolves the Maven dependency graph of mod loader profiles
+ * Loader libraries (Fabric, Quilt, Forge) are given as maven coordinates;
+ * the POMs of one level are fetched concurrently, each from the known
+ * repositories in priority order, and the resolved graph (with the SHA-1 of
+ * every jar from its .sha1 sidecar) is cached per loader version on disk so
+ * launches never touch the network.
+ */
+public class MavenResolver {
+    private static final String LIBRARIES_DIR = "/data/storage/el2/base/minecraft/libraries";
+    private static final String GRAPH_DIR = ".resolved";
+    private static final int GRAPH_FORMAT = 2; // 2: checksums of transitive jars
+    private static final Logger LOGGER = Logger.getLogger(MavenResolver.class.getName());
+    private static final int MAX_DEPTH = 16;
+    private static final List<String> DEFAULT_REPOSITORIES = List.of(
+            "https://maven.fabricmc.net/",
+            "https://maven.quiltmc.org/repository/release/",
+            "https://maven.minecraftforge.net/",
+            "https://libraries.minecraft.net/",
+            "https://repo1.maven.org/maven2/");
+
+    private final String librariesDir;
+    private final VersionMetadataCache metadataCache;
+    private final AssetManager assetManager;
+
+    public MavenResolver(VersionMetadataCache metadataCache, AssetManager assetManager) {
+        this(LIBRARIES_DIR, metadataCache, assetManager);
+    }
+
+    public MavenResolver(String librariesDir, VersionMetadataCache metadataCache, AssetManager assetManager) {
+        this.librariesDir = librariesDir;
+        this.metadataCache = metadataCache;
+        this.assetManager = assetManager;
+    }
+
+    /**
+     * Resolve the full library set of a loader version, from the on-disk
+     * graph cache when the loader JSON has not changed
+     */
+    public List<VersionMetadata.LibraryEntry> resolve(String loaderVersion) throws IOException {
+        Path json = metadataCache.getJsonPath(loaderVersion);
+        String sourceStamp = "v" + GRAPH_FORMAT + " " + Files.size(json) + " "
+                + Files.getLastModifiedTime(json).toMillis();
+        Path graphFile = getGraphPath(loaderVersion);
+
+        List<VersionMetadata.LibraryEntry> cached = readGraph(graphFile, sourceStamp);
+        if (cached != null) {
+            return cached;
+        }
+
+        VersionMetadata loader = metadataCache.loadCompiled(loaderVersion);
+        if (loader == null) {
+            throw new IOException("Loader version not installed: " + loaderVersion);
+        }
+
+        long start = System.currentTimeMillis();
+        List<VersionMetadata.LibraryEntry> resolved = resolveGraph(loader.getLibraries());
+        writeGraph(graphFile, sourceStamp, resolved);
+        LOGGER.info("Resolved " + resolved.size() + " libraries for " + loaderVersion + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return resolved;
+    }
+
+    /**
+     * Previously resolved libraries of a version, without any network access
+     * Returns an empty list when the version has no cached graph
+     */
+    public List<VersionMetadata.LibraryEntry> getResolvedLibraries(String version) {
+        try {
+            List<VersionMetadata.LibraryEntry> cached = readGraph(getGraphPath(version), null);
+            return cached != null ? cached : new ArrayList<>();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unreadable dependency graph for " + version, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Resolve and download every library of a loader version in parallel
+     */
+    public boolean install(String loaderVersion) {
+        try {
+            List<VersionMetadata.LibraryEntry> libraries = resolve(loaderVersion);
+            List<CompletableFuture<Boolean>> downloads = new ArrayList<>();
+            for (VersionMetadata.LibraryEntry library : libraries) {
+                Path target = Paths.get(librariesDir, library.getPath());
+                if (Files.exists(target) || library.getUrl() == null) {
+                    continue;
+                }
+                downloads.add(assetManager.downloadFileAsync(library.getUrl(), target, library.getSha1()));
+            }
+            boolean ok = true;
+            for (CompletableFuture<Boolean> download : downloads) {
+                ok &= download.join();
+            }
+            return ok;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to install loader libraries for " + loaderVersion, e);
+            return false;
+        }
+    }
+
+    /**
+     * Breadth-first resolution; the shallowest version of an artifact wins,
+     * and every artifact of one level is fetched concurrently
+     */
+    private List<VersionMetadata.LibraryEntry> resolveGraph(List<VersionMetadata.LibraryEntry> roots) {
+        Set<String> repositories = new LinkedHashSet<>();
+        Map<String, VersionMetadata.LibraryEntry> resolved = new LinkedHashMap<>();
+        List<String> level = new ArrayList<>();
+
+        for (VersionMetadata.LibraryEntry root : roots) {
+            // Natives jars have no POM of their own; they install with the version's libraries
+            if (root.getName() == null || root.isNativeLibrary()) {
+                continue;
+            }
+            String repo = repositoryOf(root);
+            if (repo != null) {
+                repositories.add(repo);
+            }
+            if (resolved.putIfAbsent(root.getArtifactKey(), root) == null) {
+                level.add(root.getName());
+            }
+        }
+        repositories.addAll(DEFAULT_REPOSITORIES);
+        List<String> repoList = new ArrayList<>(repositories);
+
+        for (int depth = 0; depth < MAX_DEPTH && !level.isEmpty(); depth++) {
+            Map<String, CompletableFuture<PomResult>> fetches = new LinkedHashMap<>();
+            for (String coords : level) {
+                fetches.put(coords, fetchPom(coords, repoList));
+            }
+
+            List<String> next = new ArrayList<>();
+            for (Map.Entry<String, CompletableFuture<PomResult>> fetch : fetches.entrySet()) {
+                PomResult pom = fetch.getValue().join();
+                if (pom == null) {
+                    continue;
+                }
+                VersionMetadata.LibraryEntry owner = resolved.get(artifactKey(fetch.getKey()));
+                if (owner != null && owner.getUrl() == null && owner.getPath() != null) {
+                    owner.setUrl(pom.repository + owner.getPath());
+                }
+                for (String dependency : pom.dependencies) {
+                    String key = artifactKey(dependency);
+                    if (resolved.containsKey(key)) {
+                        continue;
+                    }
+                    VersionMetadata.LibraryEntry entry = new VersionMetadata.LibraryEntry();
+                    entry.setName(dependency);
+                    entry.setPath(VersionMetadata.toMavenPath(dependency));
+                    entry.setUrl(pom.repository + entry.getPath());
+                    resolved.put(key, entry);
+                    next.add(dependency);
+                }
+            }
+            level = next;
+        }
+        fetchChecksums(resolved.values());
+        return new ArrayList<>(resolved.values());
+    }
+
+    /**
+     * Fill in missing SHA-1s from the repositories' .sha1 sidecars, so every
+     * jar is verified as it is downloaded
+     */
+    private static void fetchChecksums(Collection<VersionMetadata.LibraryEntry> libraries) {
+        Map<VersionMetadata.LibraryEntry, CompletableFuture<String>> sidecars = new LinkedHashMap<>();
+        for (VersionMetadata.LibraryEntry library : libraries) {
+            if (library.getSha1() == null && library.getUrl() != null) {
+                sidecars.put(library, LauncherHttpClient.shared().getString(library.getUrl() + ".sha1")
+                        .handle((body, error) -> error == null ? parseSha1(body) : null));
+            }
+        }
+        for (Map.Entry<VersionMetadata.LibraryEntry, CompletableFuture<String>> sidecar : sidecars.entrySet()) {
+            String sha1 = sidecar.getValue().join();
+            if (sha1 != null) {
+                sidecar.getKey().setSha1(sha1);
+            } else {
+                LOGGER.warning("No checksum published for " + sidecar.getKey().getUrl());
+            }
+        }
+    }
+
+    /**
+     * The hash of a .sha1 file, which some repositories follow with the file name
+     */
+    static String parseSha1(String body) {
+        String[] tokens = body.trim().split("\\s+");
+        String hash = tokens.length > 0 ? tokens[0].toLowerCase(Locale.ROOT) : "";
+        return hash.matches("[0-9a-f]{40}") ? hash : null;
+    }
+
+    /**
+     * Try the repositories in priority order; the first one that has the POM
+     * wins, so the graph does not depend on which server answers fastest
+     */
+    private CompletableFuture<PomResult> fetchPom(String coords, List<String> repositories) {
+        String jarPath = VersionMetadata.toMavenPath(coords);
+        if (jarPath == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // POM path drops classifier and extension
+        String[] parts = coords.split("@")[0].split(":");
+        String pomPath = parts[0].replace('.', '/') + "/" + parts[1] + "/" + parts[2] + "/"
+                + parts[1] + "-" + parts[2] + ".pom";
+
+        return fetchPom(coords, parts[2], pomPath, repositories, 0);
+    }
+
+    private CompletableFuture<PomResult> fetchPom(String coords, String version, String pomPath,
+                                                  List<String> repositories, int index) {
+        if (index >= repositories.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String repository = repositories.get(index);
+        return LauncherHttpClient.shared().getBytes(repository + pomPath)
+                .handle((body, error) -> {
+                    if (body != null) {
+                        try {
+                            return new PomResult(repository, parseDependencies(body, version));
+                        } catch (Exception e) {
+                            LOGGER.log(Level.FINE, "Unparseable POM for " + coords, e);
+                        }
+                    }
+                    return null;
+                })
+                .thenCompose(pom -> pom != null
+                        ? CompletableFuture.completedFuture(pom)
+                        : fetchPom(coords, version, pomPath, repositories, index + 1));
+    }
+
+    /**
+     * Runtime dependencies of a POM as group:artifact:version[:classifier]
+     * Versions inherited from a parent's dependencyManagement are not resolved
+     */
+    static List<String> parseDependencies(byte[] pom, String projectVersion) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setExpandEntityReferences(false);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document document = builder.parse(new ByteArrayInputStream(pom));
+        Element project = document.getDocumentElement();
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put("project.version", projectVersion);
+        properties.put("version", projectVersion);
+        Element parent = child(project, "parent");
+        if (parent != null) {
+            properties.put("project.parent.version", text(parent, "version"));
+        }
+        String groupId = text(project, "groupId");
+        properties.put("project.groupId", groupId != null ? groupId : parent != null ? text(parent, "groupId") : null);
+        Element props = child(project, "properties");
+        if (props != null) {
+            NodeList nodes = props.getChildNodes();
+            for (int i = 0; i < nodes.getLength(); i++) {
+                if (nodes.item(i) instanceof Element) {
+                    properties.put(nodes.item(i).getNodeName(), nodes.item(i).getTextContent().trim());
+                }
+            }
+        }
+
+        List<String> dependencies = new ArrayList<>();
+        Element deps = child(project, "dependencies");
+        if (deps == null) {
+            return dependencies;
+        }
+        NodeList nodes = deps.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (!(nodes.item(i) instanceof Element) || !"dependency".equals(nodes.item(i).getNodeName())) {
+                continue;
+            }
+            Element dep = (Element) nodes.item(i);
+            String scope = text(dep, "scope");
+            String type = text(dep, "type");
+            if ("true".equals(text(dep, "optional"))
+                    || (scope != null && !"compile".equals(scope) && !"runtime".equals(scope))
+                    || (type != null && !"jar".equals(type))) {
+                continue;
+            }
+            String group = interpolate(text(dep, "groupId"), properties);
+            String artifact = interpolate(text(dep, "artifactId"), properties);
+            String version = normalizeVersion(interpolate(text(dep, "version"), properties));
+            if (group == null || artifact == null || version == null || version.contains("${")) {
+                continue;
+            }
+            String classifier = text(dep, "classifier");
+            dependencies.add(group + ":" + artifact + ":" + version + (classifier != null ? ":" + classifier : ""));
+        }
+        return dependencies;
+    }
+
+    /**
+     * Pick a concrete version from a Maven range such as [1.2,2.0)
+     */
+    private static String normalizeVersion(String version) {
+        if (version == null || version.isEmpty()) {
+            return null;
+        }
+        if (version.startsWith("[") || version.startsWith("(")) {
+            String lower = version.substring(1).split(",")[0].replaceAll("[\\])]", "").trim();
+            return lower.isEmpty() ? null : lower;
+        }
+        return version;
+    }
+
+    private static String interpolate(String value, Map<String, String> properties) {
+        if (value == null || !value.contains("${")) {
+            return value;
+        }
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            if (property.getValue() != null) {
+                value = value.replace("${" + property.getKey() + "}", property.getValue());
+            }
+        }
+        return value;
+    }
+
+    private static Element child(Element parent, String name) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static String text(Element parent, String name) {
+        Element element = child(parent, name);
+        return element != null ? element.getTextContent().trim() : null;
+    }
+
+    private static String artifactKey(String coords) {
+        VersionMetadata.LibraryEntry entry = new VersionMetadata.LibraryEntry();
+        entry.setName(coords);
+        return entry.getArtifactKey();
+    }
+
+    private static String repositoryOf(VersionMetadata.LibraryEntry library) {
+        String url = library.getUrl();
+        String path = library.getPath();
+        if (url == null || path == null || !url.endsWith(path)) {
+            return null;
+        }
+        return url.substring(0, url.length() - path.length());
+    }
+
+    private Path getGraphPath(String version) {
+        return Paths.get(librariesDir, GRAPH_DIR, version + ".graph");
+    }
+
+    private static List<VersionMetadata.LibraryEntry> readGraph(Path graphFile, String sourceStamp) throws IOException {
+        if (!Files.exists(graphFile)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(graphFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || (sourceStamp != null && !lines.get(0).equals("# " + sourceStamp))) {
+            return null;
+        }
+        List<VersionMetadata.LibraryEntry> libraries = new ArrayList<>(lines.size());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length < 4) {
+                continue;
+            }
+            VersionMetadata.LibraryEntry entry = new VersionMetadata.LibraryEntry();
+            entry.setName(fields[0]);
+            entry.setPath(fields[1]);
+            entry.setUrl(fields[2].isEmpty() ? null : fields[2]);
+            entry.setSha1(fields[3].isEmpty() ? null : fields[3]);
+            libraries.add(entry);
+        }
+        return libraries;
+    }
+
+    private static void writeGraph(Path graphFile, String sourceStamp, List<VersionMetadata.LibraryEntry> libraries)
+            throws IOException {
+        StringBuilder sb = new StringBuilder("# ").append(sourceStamp).append('\n');
+        for (VersionMetadata.LibraryEntry library : libraries) {
+            sb.append(library.getName()).append('\t')
+                    .append(library.getPath()).append('\t')
+                    .append(library.getUrl() != null ? library.getUrl() : "").append('\t')
+                    .append(library.getSha1() != null ? library.getSha1() : "").append('\n');
+        }
+        Files.createDirectories(graphFile.getParent());
+        Path temp = graphFile.resolveSibling(graphFile.getFileName() + ".tmp");
+        Files.write(temp, sb.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, graphFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static class PomResult {
+        final String repository;
+        final List<String> dependencies;
+
+        PomResult(String repository, List<String> dependencies) {
+            this.repository = repository;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.mclaunch.launcher;
 
 import java.io.*;
-import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Core Minecraft launcher implementation
@@ -15,29 +29,113 @@ import java.util.ArrayList;
  */
 public class MinecraftLauncher {
     private static final String MINECRAFT_DIR = "/data/storage/el2/base/minecraft";
+    private static final long TELEMETRY_INTERVAL_MS = 2000;
+    // One GC log per game process, so telemetry never replays another session; the JVM expands %p
+    static final String GC_LOG_FILE = "logs/gc-%p.log";
+    private static final int GC_LOGS_KEPT = 5;
     private static final String VERSIONS_MANIFEST_URL = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
     
     private Map<String, VersionInfo> availableVersions;
-    private LauncherConfig config;
+    private static final ExecutorService WARM_UP_EXECUTOR = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "launcher-warmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long BACKGROUND_YIELD_TIMEOUT_MS = 5000;
+    // Runs the sequential steps of async operations; a step blocks its thread while joining transfers
+    private static final ExecutorService TASK_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "launcher-task");
+        thread.setDaemon(true);
+        return thread;
+    });
     
+    private LazyComponent<LauncherConfig> config;
+    private VersionMetadataCache metadataCache;
+    private LazyComponent<VersionManifest> versionManifest;
+    private LazyComponent<AssetManager> assetManager;
+    private LazyComponent<Boolean> directories;
+    private LazyComponent<MavenResolver> mavenResolver;
+    private LazyComponent<StorageLedger> storageLedger;
+    private LazyComponent<JavaRuntimeManager> javaRuntimes;
+    private LazyComponent<WorldBackupStore> worldBackups;
+    private final Map<String, Object> installLocks = new ConcurrentHashMap<>();
+    // Background staging (prefetch) runs; any foreground install cancels them first
+    private final Map<ProgressTracker, CompletableFuture<Boolean>> backgroundInstalls = new ConcurrentHashMap<>();
+    private final AtomicInteger foregroundInstalls = new AtomicInteger();
+    private volatile ProcessTelemetry telemetry;
+    private final String minecraftDir;
+    private final GameLogStore logStore;
+    private final Set<String> activeLogSessions = ConcurrentHashMap.newKeySet();
+    // Game directory of every running game process, whoever started it
+    private final Map<Process, Path> runningGames = new ConcurrentHashMap<>();
+    
+    /**
+     * Cheap to construct: components are created on first use or by warmUp()
+     */
     public MinecraftLauncher() {
+        this(MINECRAFT_DIR, VERSIONS_MANIFEST_URL, AssetManager.RESOURCES_URL);
+    }
+    
+    /**
+     * Launcher over another game directory and download endpoints, e.g. a
+     * local mirror
+     */
+    public MinecraftLauncher(String minecraftDir, String manifestUrl, String resourcesUrl) {
+        StartupTimeline timeline = StartupTimeline.global();
+        long start = System.nanoTime();
+        this.minecraftDir = minecraftDir;
+        this.logStore = new GameLogStore(minecraftDir + "/logs/sessions");
         this.availableVersions = new HashMap<>();
-        this.config = new LauncherConfig();
-        initializeMinecraftDirectory();
+        this.config = new LazyComponent<>("LauncherConfig", LauncherConfig::new);
+        this.metadataCache = new VersionMetadataCache(minecraftDir + "/versions");
+        this.versionManifest = new LazyComponent<>("VersionManifest",
+                () -> new VersionManifest(manifestUrl, minecraftDir + "/version_manifest.json"));
+        this.storageLedger = new LazyComponent<>("StorageLedger", () -> new StorageLedger(minecraftDir));
+        this.javaRuntimes = new LazyComponent<>("JavaRuntimeManager", () -> new JavaRuntimeManager(minecraftDir));
+        this.worldBackups = new LazyComponent<>("WorldBackupStore",
+                () -> new WorldBackupStore(minecraftDir, this::isGameRunningIn));
+        this.assetManager = new LazyComponent<>("AssetManager",
+                () -> new AssetManager(minecraftDir, resourcesUrl, storageLedger));
+        this.directories = new LazyComponent<>("MinecraftDirectory", this::initializeMinecraftDirectory);
+        this.mavenResolver = new LazyComponent<>("MavenResolver",
+                () -> new MavenResolver(minecraftDir + "/libraries", metadataCache, assetManager.get()));
+        timeline.record("MinecraftLauncher", start);
+    }
+    
+    /**
+     * Create all components in the background so the first real call finds
+     * them ready; safe to call from the UI thread
+     */
+    public CompletableFuture<Void> warmUp() {
+        return CompletableFuture.allOf(
+                directories.warmUp(WARM_UP_EXECUTOR),
+                config.warmUp(WARM_UP_EXECUTOR),
+                versionManifest.warmUp(WARM_UP_EXECUTOR)
+                        .thenAccept(VersionManifest::getCatalog),
+                assetManager.warmUp(WARM_UP_EXECUTOR));
+    }
+    
+    /**
+     * How long each component took to become ready
+     */
+    public StartupTimeline getStartupTimeline() {
+        return StartupTimeline.global();
     }
     
     /**
      * Initialize the Minecraft directory structure
      */
-    private void initializeMinecraftDirectory() {
+    private Boolean initializeMinecraftDirectory() {
         try {
-            Files.createDirectories(Paths.get(MINECRAFT_DIR));
-            Files.createDirectories(Paths.get(MINECRAFT_DIR, "versions"));
-            Files.createDirectories(Paths.get(MINECRAFT_DIR, "libraries"));
-            Files.createDirectories(Paths.get(MINECRAFT_DIR, "assets"));
-            Files.createDirectories(Paths.get(MINECRAFT_DIR, "saves"));
+            Files.createDirectories(Paths.get(minecraftDir));
+            Files.createDirectories(Paths.get(minecraftDir, "versions"));
+            Files.createDirectories(Paths.get(minecraftDir, "libraries"));
+            Files.createDirectories(Paths.get(minecraftDir, "assets"));
+            Files.createDirectories(Paths.get(minecraftDir, "saves"));
+            return Boolean.TRUE;
         } catch (IOException e) {
             System.err.println("Failed to create Minecraft directories: " + e.getMessage());
+            return Boolean.FALSE;
         }
     }
     
@@ -46,27 +144,7 @@ public class MinecraftLauncher {
      */
     public boolean launchMinecraft(String version) {
         try {
-            // Ensure version is installed
-            if (!isVersionInstalled(version)) {
-                downloadVersion(version);
-            }
-            
-            // Build classpath
-            String classpath = buildClasspath(version);
-            
-            // Build launch command
-            List<String> command = buildLaunchCommand(version, classpath);
-            
-            // Start the game process
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.directory(new File(MINECRAFT_DIR));
-            pb.redirectErrorStream(true);
-            
-            Process process = pb.start();
-            
-            // Handle process output
-            handleProcessOutput(process);
-            
+            launch(version, new ProgressTracker());
             return true;
         } catch (Exception e) {
             System.err.println("Failed to launch Minecraft: " + e.getMessage());
@@ -74,54 +152,537 @@ public class MinecraftLauncher {
         }
     }
     
+    /**
+     * Install (if needed) and launch without blocking the caller; progress
+     * covers the download, and cancelling stops it. A game started before the
+     * cancel took effect is destroyed rather than left running untracked.
+     */
+    public LauncherTask<Process> launchMinecraftAsync(String version) {
+        return LauncherTask.start(progress -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return launch(version, progress);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, TASK_EXECUTOR), Process::destroy);
+    }
+    
+    private Process launch(String version, ProgressTracker progress) throws Exception {
+        directories.get();
+        LaunchOptions options = defaultLaunchOptions();
+        ensureInstalled(version, progress);
+        if (progress.isCancelled()) {
+            throw new CancellationException("Launch cancelled: " + version);
+        }
+        progress.setPhase("launching");
+        Process process = startGame(version, options);
+        
+        // Handle process output
+        handleProcessOutput(process, "[MC] ", version);
+        
+        // Watch the child for heap pressure and long pauses
+        if (telemetry != null) {
+            telemetry.stop();
+        }
+        telemetry = startTelemetry(process, options);
+        return process;
+    }
+    
+    /**
+     * Start a game process with explicit per-instance options
+     * The caller owns the returned process and must consume its output
+     */
+    public Process startGame(String version, LaunchOptions options) throws Exception {
+        directories.get();
+        
+        // Ensure version is installed; concurrent launches of one version install it once
+        ensureInstalled(version);
+        
+        // Resolved launch metadata (compiled binary form, no JSON parsing when cached)
+        VersionMetadata metadata = loadMetadata(version);
+        
+        // Build classpath, optionally packed into a single jar
+        String classpath = packClasspath(version, metadata, buildClasspath(version, metadata));
+        
+        // Build launch command for the runtime this version needs
+        JavaRuntimeManager.JavaRuntime runtime = selectRuntime(version, metadata);
+        List<String> command = buildLaunchCommand(version, classpath, metadata, options, runtime);
+        
+        // Start the game process in the instance's own game directory
+        File gameDir = new File(options.getGameDir());
+        gameDir.mkdirs();
+        ProcessBuilder pb = new ProcessBuilder(wrapWithSchedulingLimits(command, options));
+        pb.directory(gameDir);
+        pb.redirectErrorStream(true);
+        
+        Process process = pb.start();
+        runningGames.put(process, gameDir.toPath().toAbsolutePath().normalize());
+        process.onExit().thenRun(() -> runningGames.remove(process));
+        if (runtime != null && runtime.supportsAutoCds()) {
+            // The JVM writes the CDS archive on exit, outside the ledger's view
+            Path versionDir = Paths.get(minecraftDir, "versions", version);
+            process.onExit().thenRun(() -> storageLedger.get().reconcile(versionDir));
+        }
+        return process;
+    }
+    
+    /**
+     * Runtime for a version: the configured javaPath when the user set one,
+     * else the fastest installed runtime of the Java version the game needs
+     * Returns null when nothing matches; the launch then uses javaPath as is.
+     */
+    private JavaRuntimeManager.JavaRuntime selectRuntime(String version, VersionMetadata metadata) {
+        String javaPath = config.get().getJavaPath();
+        if (javaPath != null && !javaPath.equals("java")) {
+            return javaRuntimes.get().probeExecutable(Paths.get(javaPath));
+        }
+        int major = JavaRuntimeManager.requiredMajor(version, metadata);
+        JavaRuntimeManager.JavaRuntime runtime = javaRuntimes.get().select(major);
+        if (runtime == null) {
+            System.err.println("No Java " + (major > 0 ? major + " " : "") + "runtime installed for " + version
+                    + ", using " + javaPath);
+        }
+        return runtime;
+    }
+    
+    /**
+     * Start sampling a game process; stops by itself once the process exits
+     */
+    public ProcessTelemetry startTelemetry(Process process, LaunchOptions options) {
+        ProcessTelemetry processTelemetry = new ProcessTelemetry(process.pid(),
+                options.getGcLogFile() != null ? Paths.get(options.getGcLogFile()) : null,
+                options.getMaxMemory());
+        processTelemetry.start(TELEMETRY_INTERVAL_MS);
+        process.onExit().thenRun(processTelemetry::stop);
+        return processTelemetry;
+    }
+    
+    /**
+     * Telemetry of the most recent launchMinecraft call, or null
+     */
+    public ProcessTelemetry getTelemetry() {
+        return telemetry;
+    }
+    
+    public String getMinecraftDir() {
+        return minecraftDir;
+    }
+    
+    /**
+     * Delete all but the newest per-process GC logs of a log directory
+     */
+    private static void pruneGcLogs(File logDir) {
+        File[] logs = logDir.listFiles((dir, name) -> name.startsWith("gc-") && name.endsWith(".log"));
+        if (logs == null || logs.length < GC_LOGS_KEPT) {
+            return;
+        }
+        Arrays.sort(logs, Comparator.comparingLong(File::lastModified).reversed());
+        // Keep room for the log of the process about to start
+        for (int i = GC_LOGS_KEPT - 1; i < logs.length; i++) {
+            logs[i].delete();
+        }
+    }
+    
+    /**
+     * Launch options derived from the global launcher configuration
+     */
+    public LaunchOptions defaultLaunchOptions() {
+        LaunchOptions options = new LaunchOptions();
+        options.setGameDir(minecraftDir);
+        options.setUsername(config.get().getUsername());
+        options.setUuid(config.get().getUuid());
+        options.setAccessToken(config.get().getAccessToken());
+        options.setMaxMemory(config.get().getMaxMemory());
+        options.setMinMemory(config.get().getMinMemory());
+        options.setGcLogFile(minecraftDir + "/" + GC_LOG_FILE);
+        return options;
+    }
+    
+    private void ensureInstalled(String version) throws Exception {
+        ensureInstalled(version, new ProgressTracker());
+    }
+    
+    private void ensureInstalled(String version, ProgressTracker progress) throws Exception {
+        if (isVersionInstalled(version)) {
+            return;
+        }
+        foregroundInstalls.incrementAndGet();
+        try {
+            yieldBackgroundInstalls();
+            synchronized (installLocks.computeIfAbsent(version, v -> new Object())) {
+                if (!isVersionInstalled(version)) {
+                    downloadVersion(version, progress, false);
+                    storageLedger.get().reconcile(Paths.get(minecraftDir, "versions", version));
+                }
+            }
+        } finally {
+            foregroundInstalls.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Cancel background staging and wait for its transfers to stop, so a
+     * foreground install gets the whole link and never races it for a file
+     */
+    private void yieldBackgroundInstalls() {
+        for (Map.Entry<ProgressTracker, CompletableFuture<Boolean>> entry : backgroundInstalls.entrySet()) {
+            entry.getKey().cancel();
+            try {
+                entry.getValue().get(BACKGROUND_YIELD_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Cancelled or failed, either way it has stopped
+            }
+        }
+    }
+    
+    /**
+     * Download a version without activating it: the version JSON, libraries
+     * and assets go to their usual places, the client jar to a staged file
+     * that the next install of the version promotes instead of downloading.
+     * Gives way to any foreground install and stops after byteLimit bytes.
+     */
+    LauncherTask<Boolean> stageVersionAsync(String version, long byteLimit) {
+        return LauncherTask.start(progress -> {
+            progress.setByteLimit(byteLimit);
+            CompletableFuture<Boolean> work = new CompletableFuture<>();
+            backgroundInstalls.put(progress, work);
+            if (foregroundInstalls.get() > 0) {
+                progress.cancel();
+            }
+            TASK_EXECUTOR.execute(() -> {
+                try {
+                    directories.get();
+                    if (progress.isCancelled()) {
+                        throw new CancellationException("Foreground install in progress");
+                    }
+                    if (!isInstalledOrStaged(version)) {
+                        downloadVersion(version, progress, true);
+                    }
+                    work.complete(true);
+                } catch (Throwable e) {
+                    work.completeExceptionally(e);
+                } finally {
+                    backgroundInstalls.remove(progress);
+                }
+            });
+            return work;
+        });
+    }
+    
+    /**
+     * Whether a version is installed or its download is staged
+     */
+    boolean isInstalledOrStaged(String version) {
+        return isVersionInstalled(version) || Files.isRegularFile(getStagedJar(version));
+    }
+    
+    private Path getStagedJar(String version) {
+        return Paths.get(minecraftDir, "versions", version, version + ".jar.staged");
+    }
+    
+    /**
+     * Move a complete staged client jar into place
+     */
+    private boolean promoteStaged(String version, Path clientJar, VersionMetadata metadata) {
+        Path staged = getStagedJar(version);
+        if (!Files.exists(staged)) {
+            return false;
+        }
+        try {
+            if (FileHasher.matches(staged, metadata.getClientSha1(), metadata.getClientSize())) {
+                Files.move(staged, clientJar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                storageLedger.get().recordDelete(staged);
+                storageLedger.get().recordWrite(clientJar);
+                return true;
+            }
+            storageLedger.get().delete(staged);
+        } catch (IOException e) {
+            System.err.println("Failed to promote staged jar of " + version + ": " + e.getMessage());
+        }
+        return false;
+    }
+    
+    /**
+     * Prefix the command with nice/taskset when niceness or CPU affinity is requested
+     */
+    private List<String> wrapWithSchedulingLimits(List<String> command, LaunchOptions options) {
+        List<String> wrapped = new ArrayList<>();
+        if (options.getCpuAffinity() != null && findExecutable("taskset") != null) {
+            wrapped.add(findExecutable("taskset"));
+            wrapped.add("-c");
+            wrapped.add(options.getCpuAffinity());
+        }
+        if (options.getNiceness() != 0 && findExecutable("nice") != null) {
+            wrapped.add(findExecutable("nice"));
+            wrapped.add("-n");
+            wrapped.add(String.valueOf(options.getNiceness()));
+        }
+        wrapped.addAll(command);
+        return wrapped;
+    }
+    
+    private static String findExecutable(String name) {
+        String path = System.getenv("PATH");
+        String[] dirs = path != null ? path.split(File.pathSeparator) : new String[] {"/system/bin", "/usr/bin", "/bin"};
+        for (String dir : dirs) {
+            File candidate = new File(dir, name);
+            if (candidate.canExecute()) {
+                return candidate.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+    
     /**
      * Check if a version is installed
      */
     private boolean isVersionInstalled(String version) {
-        File versionDir = new File(MINECRAFT_DIR, "versions/" + version);
+        File versionDir = new File(minecraftDir, "versions/" + version);
         File versionJar = new File(versionDir, version + ".jar");
         File versionJson = new File(versionDir, version + ".json");
         
+        if (versionDir.exists() && versionJson.exists() && !versionJar.exists()) {
+            // Loader profiles have no jar of their own; they use their parent's
+            VersionMetadata metadata = loadMetadata(version);
+            String jarVersion = metadata != null ? metadata.getJarVersion() : null;
+            return jarVersion != null && new File(minecraftDir, "versions/" + jarVersion + "/" + jarVersion + ".jar").exists();
+        }
+        
         return versionDir.exists() && versionJar.exists() && versionJson.exists();
     }
     
     /**
-     * Download a specific version
+     * Install the Maven libraries of a mod loader profile
+     * The loader JSON (versions/&lt;id&gt;/&lt;id&gt;.json, inheriting from a vanilla
+     * version) must already be in place
+     */
+    public boolean installLoader(String loaderVersion) {
+        directories.get();
+        foregroundInstalls.incrementAndGet();
+        try {
+            yieldBackgroundInstalls();
+            synchronized (installLocks.computeIfAbsent(loaderVersion, v -> new Object())) {
+                boolean installed = mavenResolver.get().install(loaderVersion);
+                storageLedger.get().reconcile(Paths.get(minecraftDir, "versions", loaderVersion));
+                return installed;
+            }
+        } finally {
+            foregroundInstalls.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Evict least recently played versions until installed files fit in the
+     * configured storage budget; pinned versions (e.g. running ones) are kept
      */
-    private void downloadVersion(String version) throws Exception {
+    public VersionEvictor.EvictionReport enforceStorageBudget(Collection<ProfileManager.UserProfile> profiles,
+                                                              Set<String> pinnedVersions) {
+        long budget = config.get().getStorageBudgetMb() * 1024L * 1024L;
+        return new VersionEvictor(minecraftDir, storageLedger.get(), metadataCache, mavenResolver.get(), installLocks)
+                .enforce(budget, profiles, pinnedVersions);
+    }
+    
+    public AssetManager getAssetManager() {
+        return assetManager.get();
+    }
+    
+    public JavaRuntimeManager getJavaRuntimeManager() {
+        return javaRuntimes.get();
+    }
+    
+    /**
+     * Whether a game started by this launcher is running in a game directory
+     */
+    public boolean isGameRunningIn(Path gameDir) {
+        return runningGames.containsValue(gameDir.toAbsolutePath().normalize());
+    }
+    
+    /**
+     * Snapshots of the worlds in saves/; worlds of a running game are refused
+     * Per-profile game directories have their own view, see forProfile.
+     */
+    public WorldBackupStore getWorldBackups() {
+        return worldBackups.get();
+    }
+    
+    VersionManifest getVersionManifest() {
+        return versionManifest.get();
+    }
+    
+    LauncherConfig getConfig() {
+        return config.get();
+    }
+    
+    /**
+     * Bytes used by installed versions, libraries and assets
+     */
+    public StorageLedger getStorageLedger() {
+        return storageLedger.get();
+    }
+    
+    /**
+     * Hash every file of an installed version and re-download only what is
+     * missing or corrupt
+     */
+    public InstallVerifier.VerifyReport verifyAndRepair(String version) {
+        synchronized (installLocks.computeIfAbsent(version, v -> new Object())) {
+            return new InstallVerifier(minecraftDir, metadataCache, assetManager.get(), mavenResolver.get())
+                    .verify(version, true);
+        }
+    }
+    
+    /**
+     * Download a version if it is not installed yet
+     */
+    public boolean installVersion(String version) {
+        try {
+            directories.get();
+            ensureInstalled(version);
+            return isVersionInstalled(version);
+        } catch (Exception e) {
+            System.err.println("Failed to install " + version + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Asynchronous installVersion with progress and cancellation
+     */
+    public LauncherTask<Boolean> installVersionAsync(String version) {
+        return LauncherTask.start(progress -> CompletableFuture.supplyAsync(() -> {
+            try {
+                directories.get();
+                ensureInstalled(version, progress);
+                return isVersionInstalled(version);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, TASK_EXECUTOR));
+    }
+    
+    /**
+     * Download a specific version: its JSON, client JAR, libraries and assets
+     * When staging, the client JAR is kept aside so the version does not count
+     * as installed yet.
+     */
+    private void downloadVersion(String version, ProgressTracker progress, boolean stage) throws Exception {
         System.out.println("Downloading Minecraft " + version + "...");
         
-        // This is a simplified version - in reality you'd need to:
-        // 1. Fetch version manifest
-        // 2. Parse version JSON
-        // 3. Download client JAR
-        // 4. Download libraries
-        // 5. Download assets
+        // Fetch version manifest; built-in defaults and a cached copy may not know the version yet
+        progress.setPhase("manifest");
+        VersionManifest manifest = versionManifest.get();
+        if (manifest.isManifestStale() || manifest.getCatalog().get(version) == null) {
+            manifest.refreshAsync().join();
+        }
+        VersionManifest.VersionInfo info = manifest.getCatalog().get(version);
+        if (info == null || info.getUrl() == null) {
+            throw new IOException("Version not found in manifest: " + version);
+        }
+        
+        // Parse version JSON
+        AssetManager assets = assetManager.get();
+        progress.addTotal(1, 0);
+        if (!assets.downloadFileAsync(info.getUrl(), metadataCache.getJsonPath(version), null, progress).join()) {
+            throw new IOException("Failed to download version JSON for " + version);
+        }
+        VersionMetadata metadata = metadataCache.compile(version);
         
-        // Create version directory
-        File versionDir = new File(MINECRAFT_DIR, "versions/" + version);
-        versionDir.mkdirs();
+        // Client JAR, libraries and assets all at once
+        Path clientJar = Paths.get(minecraftDir, "versions", version, version + ".jar");
+        Path target = stage ? getStagedJar(version) : clientJar;
+        CompletableFuture<Boolean> client = CompletableFuture.completedFuture(Boolean.TRUE);
+        if (metadata.getClientUrl() != null && (stage || !promoteStaged(version, clientJar, metadata))) {
+            progress.addTotal(1, metadata.getClientSize());
+            client = installClientJar(version, metadata, target, progress);
+        }
+        CompletableFuture<Boolean> libraries = assets.downloadLibraries(metadata, progress);
+        CompletableFuture<Boolean> objects = assets.downloadAssets(metadata, progress);
         
-        // Simulate download for now
-        System.out.println("Version " + version + " downloaded successfully");
+        if (!client.join() || !libraries.join() || !objects.join()) {
+            // The client JAR marks a version as installed; leave none behind on a partial install
+            storageLedger.get().delete(target);
+            if (progress.isCancelled()) {
+                throw new CancellationException("Install cancelled: " + version);
+            }
+            throw new IOException("Incomplete download of " + version);
+        }
+        System.out.println("Version " + version + (stage ? " staged" : " downloaded") + " successfully");
+    }
+    
+    /**
+     * Client JAR from the nearest installed version plus changed entries,
+     * or the full download if that is not possible
+     */
+    private CompletableFuture<Boolean> installClientJar(String version, VersionMetadata metadata, Path target,
+                                                        ProgressTracker progress) {
+        AssetManager assets = assetManager.get();
+        CompletableFuture<Boolean> delta = CompletableFuture.completedFuture(false);
+        if (config.get().isDeltaUpdates() && metadata.getClientSha1() != null && metadata.getClientSize() > 0) {
+            delta = new JarDeltaInstaller(Paths.get(minecraftDir, "versions"), storageLedger.get())
+                    .install(version, metadata.getClientUrl(), target, metadata.getClientSha1(),
+                            metadata.getClientSize(), progress);
+        }
+        return delta.thenCompose(done -> done
+                ? CompletableFuture.completedFuture(true)
+                : assets.downloadFileAsync(metadata.getClientUrl(), target, metadata.getClientSha1(), progress));
+    }
+    
+    /**
+     * Load resolved launch metadata for an installed version
+     */
+    private VersionMetadata loadMetadata(String version) {
+        try {
+            return metadataCache.load(version);
+        } catch (Exception e) {
+            System.err.println("Failed to load metadata for " + version + ": " + e.getMessage());
+            return null;
+        }
     }
     
     /**
      * Build classpath for launching
      */
-    private String buildClasspath(String version) {
+    private String buildClasspath(String version, VersionMetadata metadata) {
         StringBuilder classpath = new StringBuilder();
         
-        // Add version JAR
-        classpath.append(MINECRAFT_DIR)
+        // Add version JAR (a loader profile uses the jar of the version it inherits from)
+        String jarVersion = metadata != null && metadata.getJarVersion() != null ? metadata.getJarVersion() : version;
+        classpath.append(minecraftDir)
                 .append("/versions/")
-                .append(version)
+                .append(jarVersion)
                 .append("/")
-                .append(version)
+                .append(jarVersion)
                 .append(".jar");
         
-        // Add libraries (simplified)
-        File libDir = new File(MINECRAFT_DIR, "libraries");
+        // Add libraries resolved from the version metadata
+        if (metadata != null && !metadata.getLibraries().isEmpty()) {
+            Set<String> seen = new HashSet<>();
+            for (VersionMetadata.LibraryEntry library : metadata.getLibraries()) {
+                if (!library.isNativeLibrary() && seen.add(library.getArtifactKey())) {
+                    classpath.append(File.pathSeparator)
+                            .append(minecraftDir)
+                            .append("/libraries/")
+                            .append(library.getPath());
+                }
+            }
+            
+            // Transitive loader dependencies from the cached Maven graph
+            for (VersionMetadata.LibraryEntry library : mavenResolver.get().getResolvedLibraries(version)) {
+                if (seen.add(library.getArtifactKey())) {
+                    classpath.append(File.pathSeparator)
+                            .append(minecraftDir)
+                            .append("/libraries/")
+                            .append(library.getPath());
+                }
+            }
+            return classpath.toString();
+        }
+        
+        // No metadata, fall back to everything under libraries/
+        File libDir = new File(minecraftDir, "libraries");
         if (libDir.exists()) {
             addLibrariesToClasspath(libDir, classpath);
         }
@@ -129,6 +690,30 @@ public class MinecraftLauncher {
         return classpath.toString();
     }
     
+    /**
+     * Replace the classpath with a packed jar when the configured mode asks for it
+     * Mod loaders find the game and their own jars by scanning the individual
+     * classpath entries, so only vanilla versions are packed.
+     */
+    private String packClasspath(String version, VersionMetadata metadata, String classpath) {
+        ClasspathPacker.Mode mode = ClasspathPacker.Mode.parse(config.get().getClasspathMode());
+        if (mode == ClasspathPacker.Mode.DIRECT || metadata == null || metadata.getJarVersion() != null
+                || !mavenResolver.get().getResolvedLibraries(version).isEmpty()) {
+            return classpath;
+        }
+        List<Path> entries = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            entries.add(Paths.get(entry));
+        }
+        try {
+            ClasspathPacker packer = new ClasspathPacker(Paths.get(minecraftDir, "versions"), storageLedger.get());
+            return packer.pack(version, entries, mode).toString();
+        } catch (IOException e) {
+            System.err.println("Failed to pack classpath of " + version + ", using plain classpath: " + e.getMessage());
+            return classpath;
+        }
+    }
+    
     /**
      * Add libraries to classpath recursively
      */
@@ -148,82 +733,255 @@ public class MinecraftLauncher {
     /**
      * Build the complete launch command
      */
-    private List<String> buildLaunchCommand(String version, String classpath) {
+    private List<String> buildLaunchCommand(String version, String classpath, VersionMetadata metadata,
+                                            LaunchOptions options, JavaRuntimeManager.JavaRuntime runtime) {
         List<String> command = new ArrayList<>();
+        Map<String, String> variables = buildArgumentVariables(version, classpath, metadata, options);
         
         // Java executable
-        command.add("java");
+        command.add(runtime != null ? runtime.getExecutable().toString() : config.get().getJavaPath());
         
         // JVM arguments
-        command.add("-Xmx" + config.getMaxMemory() + "M");
-        command.add("-Xms" + config.getMinMemory() + "M");
-        command.add("-Djava.library.path=" + MINECRAFT_DIR + "/natives");
+        command.add("-Xmx" + options.getMaxMemory() + "M");
+        command.add("-Xms" + options.getMinMemory() + "M");
         command.add("-Dminecraft.launcher.brand=HarmonyMCLauncher");
         command.add("-Dminecraft.launcher.version=1.0.0");
         
-        // Classpath
-        command.add("-cp");
-        command.add(classpath);
+        // Unified GC log, tailed by ProcessTelemetry; Java 8 only has the legacy format
+        if (options.getGcLogFile() != null) {
+            File logDir = new File(options.getGcLogFile()).getParentFile();
+            logDir.mkdirs();
+            pruneGcLogs(logDir);
+            if (runtime == null || runtime.supportsUnifiedLogging()) {
+                command.add("-Xlog:gc:file=" + options.getGcLogFile() + ":uptime,level,tags:filecount=0");
+            } else {
+                command.add("-Xloggc:" + options.getGcLogFile());
+            }
+        }
+        
+        if (runtime != null) {
+            // Per-version class data sharing archive, created on first exit and mapped on later starts
+            if (runtime.supportsAutoCds()) {
+                command.add("-XX:+AutoCreateSharedArchive");
+                command.add("-XX:SharedArchiveFile=" + minecraftDir + "/versions/" + version + "/" + version + ".jsa");
+            }
+            if (config.get().isUseZgc() && runtime.supportsZgc()) {
+                command.add("-XX:+UseZGC");
+                if (runtime.supportsGenerationalZgc() && runtime.getMajorVersion() < 23) {
+                    command.add("-XX:+ZGenerational");
+                }
+            }
+        }
+        
+        if (metadata != null && !metadata.getJvmArguments().isEmpty()) {
+            // Templates from the version JSON include the library path and classpath
+            for (String arg : metadata.getJvmArguments()) {
+                command.add(substitute(arg, variables));
+            }
+        } else {
+            command.add("-Djava.library.path=" + minecraftDir + "/natives");
+            command.add("-cp");
+            command.add(classpath);
+        }
         
         // Main class
-        command.add("net.minecraft.client.main.Main");
+        String mainClass = metadata != null && metadata.getMainClass() != null
+                ? metadata.getMainClass()
+                : "net.minecraft.client.main.Main";
+        command.add(mainClass);
         
         // Game arguments
+        if (metadata != null && !metadata.getGameArguments().isEmpty()) {
+            for (String arg : metadata.getGameArguments()) {
+                command.add(substitute(arg, variables));
+            }
+            return command;
+        }
+        
         command.add("--username");
-        command.add(config.getUsername());
+        command.add(options.getUsername());
         command.add("--version");
         command.add(version);
         command.add("--gameDir");
-        command.add(MINECRAFT_DIR);
+        command.add(options.getGameDir());
         command.add("--assetsDir");
-        command.add(MINECRAFT_DIR + "/assets");
+        command.add(minecraftDir + "/assets");
         command.add("--assetIndex");
-        command.add(version);
+        command.add(variables.get("assets_index_name"));
         command.add("--uuid");
-        command.add(config.getUuid());
+        command.add(options.getUuid());
         command.add("--accessToken");
-        command.add(config.getAccessToken());
+        command.add(options.getAccessToken());
         command.add("--userType");
         command.add("legacy");
         
         return command;
     }
     
+    /**
+     * Values for ${...} placeholders in version JSON argument templates
+     */
+    private Map<String, String> buildArgumentVariables(String version, String classpath, VersionMetadata metadata,
+                                                       LaunchOptions options) {
+        Map<String, String> variables = new HashMap<>();
+        String assetIndex = metadata != null && metadata.getAssetIndexId() != null
+                ? metadata.getAssetIndexId()
+                : version;
+        variables.put("auth_player_name", options.getUsername());
+        variables.put("version_name", version);
+        variables.put("game_directory", options.getGameDir());
+        variables.put("assets_root", minecraftDir + "/assets");
+        variables.put("game_assets", minecraftDir + "/assets");
+        variables.put("assets_index_name", assetIndex);
+        variables.put("auth_uuid", options.getUuid());
+        variables.put("auth_access_token", options.getAccessToken());
+        variables.put("auth_session", options.getAccessToken());
+        variables.put("auth_xuid", "0");
+        variables.put("clientid", "0");
+        variables.put("user_type", "legacy");
+        variables.put("user_properties", "{}");
+        variables.put("version_type", "release");
+        variables.put("natives_directory", minecraftDir + "/natives");
+        variables.put("library_directory", minecraftDir + "/libraries");
+        variables.put("classpath_separator", File.pathSeparator);
+        variables.put("launcher_name", "HarmonyMCLauncher");
+        variables.put("launcher_version", "1.0.0");
+        variables.put("classpath", classpath);
+        return variables;
+    }
+    
+    /**
+     * Replace ${name} placeholders, leaving unknown ones untouched
+     */
+    private static String substitute(String template, Map<String, String> variables) {
+        if (template.indexOf("${") < 0) {
+            return template;
+        }
+        StringBuilder result = new StringBuilder(template.length());
+        int pos = 0;
+        while (pos < template.length()) {
+            int start = template.indexOf("${", pos);
+            int end = start < 0 ? -1 : template.indexOf('}', start);
+            if (end < 0) {
+                result.append(template, pos, template.length());
+                break;
+            }
+            String value = variables.get(template.substring(start + 2, end));
+            result.append(template, pos, start);
+            result.append(value != null ? value : template.substring(start, end + 1));
+            pos = end + 1;
+        }
+        return result.toString();
+    }
+    
     /**
      * Handle process output
      */
-    private void handleProcessOutput(Process process) {
+    void handleProcessOutput(Process process, String prefix, String sessionLabel) {
         new Thread(() -> {
+            GameLogStore.SessionWriter session = openLogSession(sessionLabel);
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
-                    System.out.println("[MC] " + line);
+                    System.out.println(prefix + line);
+                    if (session != null) {
+                        session.append(line);
+                    }
                 }
             } catch (IOException e) {
                 System.err.println("Error reading process output: " + e.getMessage());
+            } finally {
+                closeLogSession(session);
             }
         }).start();
     }
     
+    private GameLogStore.SessionWriter openLogSession(String label) {
+        directories.get();
+        try {
+            GameLogStore.SessionWriter session = logStore.openSession(label);
+            activeLogSessions.add(session.getSessionId());
+            return session;
+        } catch (IOException e) {
+            System.err.println("Failed to open game log session: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private void closeLogSession(GameLogStore.SessionWriter session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close game log session: " + e.getMessage());
+        }
+        activeLogSessions.remove(session.getSessionId());
+        logStore.enforceBudget(config.get().getLogBudgetMb() * 1024L * 1024L, new ArrayList<>(activeLogSessions));
+    }
+    
+    /**
+     * Persisted game logs of past and running sessions
+     */
+    public GameLogStore getLogStore() {
+        return logStore;
+    }
+    
     /**
      * Get list of available versions
+     * Reads the current catalog snapshot; never waits for the network
      */
     public List<String> getAvailableVersions() {
-        // This would fetch from Mojang's version manifest
         List<String> versions = new ArrayList<>();
-        versions.add("1.20.4");
-        versions.add("1.20.3");
-        versions.add("1.20.2");
-        versions.add("1.20.1");
-        versions.add("1.19.4");
-        versions.add("1.19.3");
-        versions.add("1.19.2");
-        versions.add("1.18.2");
-        versions.add("1.17.1");
-        versions.add("1.16.5");
+        for (VersionManifest.VersionInfo info : versionManifest.get().getCatalog().ofType("release")) {
+            versions.add(info.getId());
+        }
         return versions;
     }
     
+    /**
+     * Per-instance launch settings
+     */
+    public static class LaunchOptions {
+        private String gameDir;
+        private String username;
+        private String uuid;
+        private String accessToken;
+        private int maxMemory; // MB
+        private int minMemory; // MB
+        private int niceness;
+        private String cpuAffinity; // taskset CPU list, e.g. "4-7"
+        private String gcLogFile;
+        
+        public String getGameDir() { return gameDir; }
+        public void setGameDir(String gameDir) { this.gameDir = gameDir; }
+        
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        
+        public String getUuid() { return uuid; }
+        public void setUuid(String uuid) { this.uuid = uuid; }
+        
+        public String getAccessToken() { return accessToken; }
+        public void setAccessToken(String accessToken) { this.accessToken = accessToken; }
+        
+        public int getMaxMemory() { return maxMemory; }
+        public void setMaxMemory(int maxMemory) { this.maxMemory = maxMemory; }
+        
+        public int getMinMemory() { return minMemory; }
+        public void setMinMemory(int minMemory) { this.minMemory = minMemory; }
+        
+        public int getNiceness() { return niceness; }
+        public void setNiceness(int niceness) { this.niceness = niceness; }
+        
+        public String getCpuAffinity() { return cpuAffinity; }
+        public void setCpuAffinity(String cpuAffinity) { this.cpuAffinity = cpuAffinity; }
+        
+        public String getGcLogFile() { return gcLogFile; }
+        public void setGcLogFile(String gcLogFile) { this.gcLogFile = gcLogFile; }
+    }
+    
     /**
      * Inner class for version information
      */
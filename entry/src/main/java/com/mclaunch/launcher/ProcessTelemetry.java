@@ -0,0 +1,413 @@
+package com.mclaunch.launcher;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Samples a running game process from /proc/&lt;pid&gt; and tails its GC log
+ * Keeps a rolling time series and raises alerts for heap pressure and long
+ * GC pauses. The unified log of stop-the-world collectors, the -Xloggc log
+ * of Java 8 and ZGC cycle summaries are understood; ZGC pauses are too short
+ * to be reported there, so ZGC only feeds heap figures and pressure alerts.
+ * All samplers share one daemon thread.
+ */
+public class ProcessTelemetry {
+    private static final Logger LOGGER = Logger.getLogger(ProcessTelemetry.class.getName());
+    private static final ScheduledExecutorService SAMPLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "process-telemetry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final long CLOCK_TICKS_PER_SECOND = 100; // USER_HZ on Linux/HarmonyOS kernels
+    private static final long PAGE_SIZE_KB = 4;
+    private static final int DEFAULT_CAPACITY = 600;
+    private static final int MAX_GC_EVENTS = 256;
+    private static final double HEAP_PRESSURE_RATIO = 0.85;
+    private static final int HEAP_PRESSURE_STREAK = 3;
+    private static final double LONG_PAUSE_MS = 200.0;
+
+    // [12.345s][info][gc] GC(7) Pause Young (Normal) (G1 Evacuation Pause) 120M->40M(256M) 5.123ms
+    private static final Pattern GC_PAUSE = Pattern.compile(
+            "GC\\((\\d+)\\) (Pause.*?) (\\d+)M->(\\d+)M\\((\\d+)M\\) ([\\d.]+)ms");
+    // Java 8 -Xloggc: 12.345: [GC (Allocation Failure)  123456K->45678K(262144K), 0.0123456 secs]
+    private static final Pattern LEGACY_GC = Pattern.compile(
+            "\\[((?:Full )?GC) \\(([^)]*)\\)\\s+(\\d+)K->(\\d+)K\\((\\d+)K\\), ([\\d.]+) secs\\]");
+    // [1.234s][info][gc] GC(3) Garbage Collection (Warmup) 132M(13%)->84M(8%)
+    // [1.234s][info][gc] GC(4) Minor Collection (Allocation Rate) 100M(10%)->50M(5%) 0.050s
+    private static final Pattern ZGC_CYCLE = Pattern.compile(
+            "GC\\((\\d+)\\) ((?:Garbage|Minor|Major) Collection.*?) (\\d+)M\\((\\d+)%\\)->(\\d+)M\\((\\d+)%\\)");
+
+    private final long pid;
+    private final Path gcLogFile;
+    private final int maxHeapMb;
+    private final int capacity;
+    private final ArrayDeque<Sample> samples = new ArrayDeque<>();
+    private final ArrayDeque<GcEvent> gcEvents = new ArrayDeque<>();
+    private final List<Alert> alerts = new CopyOnWriteArrayList<>();
+    private final List<AlertListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledFuture<?> task;
+    private long lastCpuTicks = -1;
+    private long lastSampleNanos;
+    private long gcLogPosition;
+    private final StringBuilder partialLine = new StringBuilder();
+    private int pressureStreak;
+    private int legacyGcCount;
+    private long peakLiveHeapMb;
+
+    public ProcessTelemetry(long pid, Path gcLogFile, int maxHeapMb) {
+        this(pid, gcLogFile, maxHeapMb, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * A "%p" in the GC log name is expanded to the pid, as the JVM does
+     */
+    public ProcessTelemetry(long pid, Path gcLogFile, int maxHeapMb, int capacity) {
+        this.pid = pid;
+        this.gcLogFile = gcLogFile != null ? Paths.get(gcLogFile.toString().replace("%p", Long.toString(pid))) : null;
+        this.maxHeapMb = maxHeapMb;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Start sampling at a fixed interval
+     */
+    public synchronized void start(long intervalMillis) {
+        if (task != null) {
+            return;
+        }
+        task = SAMPLER.scheduleAtFixedRate(this::sampleSafely, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    public void addAlertListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeAlertListener(AlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Rolling time series, oldest first
+     */
+    public synchronized List<Sample> getSamples() {
+        return new ArrayList<>(samples);
+    }
+
+    public synchronized Sample getLatestSample() {
+        return samples.peekLast();
+    }
+
+    public synchronized List<GcEvent> getGcEvents() {
+        return new ArrayList<>(gcEvents);
+    }
+
+    public List<Alert> getAlerts() {
+        return new ArrayList<>(alerts);
+    }
+
+    /**
+     * Largest heap still live after a GC, the real working set of the game
+     */
+    public synchronized long getPeakLiveHeapMb() {
+        return peakLiveHeapMb;
+    }
+
+    /**
+     * Suggested -Xmx: peak live heap with headroom for allocation bursts,
+     * rounded up to 256 MB. Returns 0 until a GC has been observed.
+     */
+    public synchronized int suggestMaxHeapMb() {
+        if (peakLiveHeapMb <= 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(peakLiveHeapMb * 1.75);
+        return (int) (((target + 255) / 256) * 256);
+    }
+
+    private void sampleSafely() {
+        try {
+            sample();
+        } catch (NoSuchFileException e) {
+            // Process is gone
+            stop();
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Telemetry sample failed for pid " + pid, e);
+        }
+    }
+
+    private void sample() throws IOException {
+        Path procDir = Paths.get("/proc", String.valueOf(pid));
+        String stat = new String(Files.readAllBytes(procDir.resolve("stat")), StandardCharsets.US_ASCII);
+        // Fields after the command name, which may itself contain spaces
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+        long cpuTicks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        int threads = Integer.parseInt(fields[17]);
+        long rssKb = Long.parseLong(fields[21]) * PAGE_SIZE_KB;
+
+        long readBytes = -1;
+        long writeBytes = -1;
+        try {
+            for (String line : Files.readAllLines(procDir.resolve("io"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("read_bytes:")) {
+                    readBytes = Long.parseLong(line.substring(11).trim());
+                } else if (line.startsWith("write_bytes:")) {
+                    writeBytes = Long.parseLong(line.substring(12).trim());
+                }
+            }
+        } catch (IOException e) {
+            // /proc/<pid>/io may be restricted; keep the other counters
+        }
+
+        long now = System.nanoTime();
+        double cpuPercent = 0;
+        if (lastCpuTicks >= 0) {
+            double elapsedSeconds = (now - lastSampleNanos) / 1e9;
+            if (elapsedSeconds > 0) {
+                cpuPercent = (cpuTicks - lastCpuTicks) * 100.0 / CLOCK_TICKS_PER_SECOND / elapsedSeconds;
+            }
+        }
+        lastCpuTicks = cpuTicks;
+        lastSampleNanos = now;
+
+        tailGcLog();
+
+        synchronized (this) {
+            GcEvent lastGc = gcEvents.peekLast();
+            Sample sample = new Sample(System.currentTimeMillis(), cpuPercent, rssKb, threads,
+                    readBytes, writeBytes,
+                    lastGc != null ? lastGc.getAfterMb() : -1,
+                    lastGc != null ? lastGc.getCapacityMb() : -1);
+            samples.addLast(sample);
+            while (samples.size() > capacity) {
+                samples.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Read whatever the JVM appended to the GC log since the last tick
+     */
+    private void tailGcLog() {
+        if (gcLogFile == null || !Files.exists(gcLogFile)) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(gcLogFile.toFile(), "r")) {
+            long length = file.length();
+            if (length < gcLogPosition) {
+                // Log was rotated or truncated
+                gcLogPosition = 0;
+                partialLine.setLength(0);
+            }
+            if (length == gcLogPosition) {
+                return;
+            }
+            file.seek(gcLogPosition);
+            byte[] chunk = new byte[(int) Math.min(length - gcLogPosition, 1 << 20)];
+            file.readFully(chunk);
+            gcLogPosition += chunk.length;
+
+            partialLine.append(new String(chunk, StandardCharsets.UTF_8));
+            int newline;
+            while ((newline = partialLine.indexOf("\n")) >= 0) {
+                parseGcLine(partialLine.substring(0, newline));
+                partialLine.delete(0, newline + 1);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to tail GC log " + gcLogFile, e);
+        }
+    }
+
+    private void parseGcLine(String line) {
+        GcEvent event = parseGcEvent(line);
+        if (event == null) {
+            return;
+        }
+
+        synchronized (this) {
+            gcEvents.addLast(event);
+            while (gcEvents.size() > MAX_GC_EVENTS) {
+                gcEvents.removeFirst();
+            }
+            peakLiveHeapMb = Math.max(peakLiveHeapMb, event.getAfterMb());
+        }
+
+        if (event.getPauseMs() >= LONG_PAUSE_MS) {
+            raise(new Alert(AlertType.LONG_PAUSE, event.getTimestamp(), event.getPauseMs(),
+                    String.format("%s took %.1f ms", event.getType(), event.getPauseMs())));
+        }
+
+        // Pressure: live data stays close to the heap ceiling across several collections
+        long ceiling = maxHeapMb > 0 ? maxHeapMb : event.getCapacityMb();
+        double ratio = ceiling > 0 ? (double) event.getAfterMb() / ceiling : 0;
+        pressureStreak = ratio >= HEAP_PRESSURE_RATIO ? pressureStreak + 1 : 0;
+        if (pressureStreak == HEAP_PRESSURE_STREAK) {
+            raise(new Alert(AlertType.HEAP_PRESSURE, event.getTimestamp(), ratio * 100,
+                    String.format("Live heap %d MB of %d MB after %d GCs, -Xmx is likely too small",
+                            event.getAfterMb(), ceiling, HEAP_PRESSURE_STREAK)));
+        }
+    }
+
+    /**
+     * A collection from one line of any supported GC log format, or null
+     */
+    private GcEvent parseGcEvent(String line) {
+        long now = System.currentTimeMillis();
+        Matcher m = GC_PAUSE.matcher(line);
+        if (m.find()) {
+            return new GcEvent(now, Integer.parseInt(m.group(1)), m.group(2).trim(), Long.parseLong(m.group(3)),
+                    Long.parseLong(m.group(4)), Long.parseLong(m.group(5)), Double.parseDouble(m.group(6)));
+        }
+        m = LEGACY_GC.matcher(line);
+        if (m.find()) {
+            // No GC ids in the legacy format
+            return new GcEvent(now, legacyGcCount++, m.group(1) + " (" + m.group(2) + ")",
+                    Long.parseLong(m.group(3)) / 1024, Long.parseLong(m.group(4)) / 1024,
+                    Long.parseLong(m.group(5)) / 1024, Double.parseDouble(m.group(6)) * 1000);
+        }
+        m = ZGC_CYCLE.matcher(line);
+        if (m.find()) {
+            long afterMb = Long.parseLong(m.group(5));
+            int afterPercent = Integer.parseInt(m.group(6));
+            long capacityMb = afterPercent > 0 ? afterMb * 100 / afterPercent : maxHeapMb;
+            // The cycle time is concurrent work, not a pause
+            return new GcEvent(now, Integer.parseInt(m.group(1)), m.group(2).trim(), Long.parseLong(m.group(3)),
+                    afterMb, capacityMb, 0);
+        }
+        return null;
+    }
+
+    private void raise(Alert alert) {
+        alerts.add(alert);
+        LOGGER.warning("pid " + pid + ": " + alert.getMessage());
+        for (AlertListener listener : listeners) {
+            try {
+                listener.onAlert(alert);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Alert listener failed", e);
+            }
+        }
+    }
+
+    public enum AlertType {
+        HEAP_PRESSURE,
+        LONG_PAUSE
+    }
+
+    /**
+     * Receives telemetry alerts on the sampler thread
+     */
+    public interface AlertListener {
+        void onAlert(Alert alert);
+    }
+
+    /**
+     * One point of the rolling time series
+     */
+    public static class Sample {
+        private final long timestamp;
+        private final double cpuPercent;
+        private final long rssKb;
+        private final int threads;
+        private final long readBytes;
+        private final long writeBytes;
+        private final long heapUsedMb;
+        private final long heapCapacityMb;
+
+        Sample(long timestamp, double cpuPercent, long rssKb, int threads, long readBytes, long writeBytes,
+               long heapUsedMb, long heapCapacityMb) {
+            this.timestamp = timestamp;
+            this.cpuPercent = cpuPercent;
+            this.rssKb = rssKb;
+            this.threads = threads;
+            this.readBytes = readBytes;
+            this.writeBytes = writeBytes;
+            this.heapUsedMb = heapUsedMb;
+            this.heapCapacityMb = heapCapacityMb;
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public double getCpuPercent() { return cpuPercent; }
+        public long getRssKb() { return rssKb; }
+        public int getThreads() { return threads; }
+        public long getReadBytes() { return readBytes; }
+        public long getWriteBytes() { return writeBytes; }
+        public long getHeapUsedMb() { return heapUsedMb; }
+        public long getHeapCapacityMb() { return heapCapacityMb; }
+    }
+
+    /**
+     * A collection parsed from the GC log; the pause is 0 for ZGC cycles
+     */
+    public static class GcEvent {
+        private final long timestamp;
+        private final int gcId;
+        private final String type;
+        private final long beforeMb;
+        private final long afterMb;
+        private final long capacityMb;
+        private final double pauseMs;
+
+        GcEvent(long timestamp, int gcId, String type, long beforeMb, long afterMb, long capacityMb, double pauseMs) {
+            this.timestamp = timestamp;
+            this.gcId = gcId;
+            this.type = type;
+            this.beforeMb = beforeMb;
+            this.afterMb = afterMb;
+            this.capacityMb = capacityMb;
+            this.pauseMs = pauseMs;
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public int getGcId() { return gcId; }
+        public String getType() { return type; }
+        public long getBeforeMb() { return beforeMb; }
+        public long getAfterMb() { return afterMb; }
+        public long getCapacityMb() { return capacityMb; }
+        public double getPauseMs() { return pauseMs; }
+    }
+
+    public static class Alert {
+        private final AlertType type;
+        private final long timestamp;
+        private final double value;
+        private final String message;
+
+        Alert(AlertType type, long timestamp, double value, String message) {
+            this.type = type;
+            this.timestamp = timestamp;
+            this.value = value;
+            this.message = message;
+        }
+
+        public AlertType getType() { return type; }
+        public long getTimestamp() { return timestamp; }
+        public double getValue() { return value; }
+        public String getMessage() { return message; }
+    }
+}
@@ -63,7 +63,7 @@ public class ProfileManager {
     }
     
     public ProfileManager() {
-        initializeProfilesDirectory();
+        // Profiles directory is created when the first profile is written
     }
     
     private void initializeProfilesDirectory() {
@@ -77,6 +77,7 @@ public class ProfileManager {
      * Create a new profile
      */
     public UserProfile createProfile(String name, String version) {
+        initializeProfilesDirectory();
         UserProfile profile = new UserProfile();
         profile.setName(name);
         profile.setVersion(version);
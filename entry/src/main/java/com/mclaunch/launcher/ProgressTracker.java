@@ -0,0 +1,206 @@
+package com.mclaunch.launcher;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and cancellation of one long-running launcher operation
+ * Transfer threads only bump counters; a snapshot is published at most every
+ * PUBLISH_INTERVAL_MS and only when something changed, so a 10k-file install
+ * produces a handful of events per second instead of one per file. Slow
+ * subscribers miss intermediate snapshots rather than back-pressuring
+ * downloads. Cancelling aborts tracked in-flight requests and makes every
+ * later transfer step fail fast.
+ */
+public class ProgressTracker implements LauncherHttpClient.ByteListener {
+    private static final long PUBLISH_INTERVAL_MS = 100;
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final ScheduledExecutorService PUBLISH_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "progress-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SubmissionPublisher<InstallProgress> publisher = new SubmissionPublisher<>();
+    private final AtomicLong bytesDone = new AtomicLong();
+    // Everything received, including bytes later taken back from bytesDone; the byte limit counts these
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong bytesTotal = new AtomicLong();
+    private final AtomicLong filesDone = new AtomicLong();
+    private final AtomicLong filesTotal = new AtomicLong();
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile long byteLimit = Long.MAX_VALUE;
+    private volatile boolean byteLimitReached;
+    private volatile String phase = "pending";
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    // Guarded by this
+    private ScheduledFuture<?> ticker;
+    private InstallProgress lastPublished;
+    private long lastTickNanos = System.nanoTime();
+    private long lastTickBytes;
+    private double rate;
+
+    /**
+     * Coalesced progress snapshots; the stream completes when the operation
+     * ends (exceptionally if it failed)
+     */
+    public Flow.Publisher<InstallProgress> getPublisher() {
+        return subscriber -> {
+            publisher.subscribe(subscriber);
+            startTicker();
+        };
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Announce files that are about to be transferred
+     */
+    public void addTotal(long files, long bytes) {
+        filesTotal.addAndGet(files);
+        bytesTotal.addAndGet(Math.max(0, bytes));
+    }
+
+    /**
+     * Cancel the operation once it has transferred more than limit bytes
+     */
+    void setByteLimit(long limit) {
+        byteLimit = limit;
+    }
+
+    @Override
+    public void onBytes(int count) {
+        bytesDone.addAndGet(count);
+        if (bytesTransferred.addAndGet(count) > byteLimit && !cancelled) {
+            byteLimitReached = true;
+            cancel();
+        }
+    }
+
+    boolean isByteLimitReached() {
+        return byteLimitReached;
+    }
+
+    /**
+     * Take back displayed bytes of a transfer whose result is thrown away, such
+     * as a failed attempt that will be retried; they still count toward the
+     * byte limit, since they were transferred
+     */
+    void discardBytes(long count) {
+        bytesDone.addAndGet(-count);
+    }
+
+    /**
+     * Take announced bytes off the total that will not be transferred after all
+     */
+    void skipBytes(long count) {
+        bytesTotal.addAndGet(-count);
+    }
+
+    public void onFileDone() {
+        filesDone.incrementAndGet();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void onExchange(CompletableFuture<?> exchange) {
+        track(exchange);
+    }
+
+    /**
+     * Register an in-flight step so cancel() can abort it
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        inFlight.add(future);
+        future.whenComplete((result, error) -> inFlight.remove(future));
+        if (cancelled) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * Stop the operation: running requests are aborted and no new ones start
+     */
+    public void cancel() {
+        cancelled = true;
+        for (CompletableFuture<?> future : inFlight) {
+            future.cancel(true);
+        }
+        publishNow();
+    }
+
+    public InstallProgress snapshot() {
+        return new InstallProgress(phase, bytesDone.get(), bytesTotal.get(), filesDone.get(), filesTotal.get(),
+                currentRate(), cancelled, finished);
+    }
+
+    /**
+     * Publish the final snapshot and complete the stream
+     */
+    void finish(Throwable error) {
+        finished = true;
+        stopTicker();
+        publishNow();
+        if (error != null) {
+            publisher.closeExceptionally(error);
+        } else {
+            publisher.close();
+        }
+    }
+
+    private synchronized void startTicker() {
+        if (ticker == null && !finished) {
+            ticker = PUBLISH_SCHEDULER.scheduleAtFixedRate(this::publishNow, 0, PUBLISH_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void stopTicker() {
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+    }
+
+    private synchronized void publishNow() {
+        if (publisher.isClosed()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long bytes = bytesDone.get();
+        long elapsed = now - lastTickNanos;
+        if (elapsed >= PUBLISH_INTERVAL_MS * 500_000L) {
+            double instant = Math.max(0, bytes - lastTickBytes) * 1e9 / elapsed;
+            rate = rate == 0 ? instant : RATE_SMOOTHING * instant + (1 - RATE_SMOOTHING) * rate;
+            lastTickNanos = now;
+            lastTickBytes = bytes;
+        }
+        InstallProgress progress = snapshot();
+        if (progress.sameCounters(lastPublished)) {
+            return;
+        }
+        lastPublished = progress;
+        // Never block a transfer or the scheduler on a slow subscriber
+        publisher.offer(progress, (subscriber, dropped) -> false);
+    }
+
+    private synchronized long currentRate() {
+        return (long) rate;
+    }
+}
@@ -0,0 +1,65 @@
+package com.mclaunch.launcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records how long each launcher component took to become ready
+ * Times are relative to the first use of the launcher classes.
+ */
+public final class StartupTimeline {
+    private static final StartupTimeline GLOBAL = new StartupTimeline();
+
+    private final long originNanos = System.nanoTime();
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+    public static StartupTimeline global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Record a component that became ready after running from startNanos until now
+     */
+    public void record(String component, long startNanos) {
+        long now = System.nanoTime();
+        entries.add(new Entry(component, Thread.currentThread().getName(),
+                Math.max(0, startNanos - originNanos) / 1_000_000, (now - startNanos) / 1_000_000));
+    }
+
+    /**
+     * Entries in the order components became ready
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Startup timeline:");
+        for (Entry entry : entries) {
+            sb.append(String.format("%n  +%5d ms  %-24s %5d ms  [%s]",
+                    entry.getStartOffsetMillis(), entry.getComponent(), entry.getDurationMillis(), entry.getThread()));
+        }
+        return sb.toString();
+    }
+
+    public static class Entry {
+        private final String component;
+        private final String thread;
+        private final long startOffsetMillis;
+        private final long durationMillis;
+
+        Entry(String component, String thread, long startOffsetMillis, long durationMillis) {
+            this.component = component;
+            this.thread = thread;
+            this.startOffsetMillis = startOffsetMillis;
+            this.durationMillis = durationMillis;
+        }
+
+        public String getComponent() { return component; }
+        public String getThread() { return thread; }
+        public long getStartOffsetMillis() { return startOffsetMillis; }
+        public long getDurationMillis() { return durationMillis; }
+    }
+}
@@ -0,0 +1,415 @@
+package com.mclaunch.launcher;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * On-disk byte accounting for installed versions, libraries and assets
+ * Every tracked file and its size is kept in memory and appended to a journal
+ * (.storage-ledger) as it is written or deleted, so totals are always current
+ * without walking the tree. The tree is only walked when the journal is
+ * missing or unreadable.
+ */
+public class StorageLedger {
+    private static final String MINECRAFT_DIR = "/data/storage/el2/base/minecraft";
+    private static final String LEDGER_FILE = ".storage-ledger";
+    private static final List<String> TRACKED_ROOTS = List.of("versions", "libraries", "assets");
+    private static final int COMPACT_SLACK = 4096; // stale journal records tolerated before rewriting
+    private static final Logger LOGGER = Logger.getLogger(StorageLedger.class.getName());
+
+    private final Path root;
+    private final Path journalPath;
+    private final Map<String, Long> files = new HashMap<>();
+    private final Map<String, Long> versionBytes = new HashMap<>();
+    private final Map<String, Integer> versionFiles = new HashMap<>();
+    private final Map<String, Long> rootBytes = new HashMap<>();
+    private long totalBytes;
+    private BufferedWriter journal;
+    private int journalRecords;
+
+    public StorageLedger() {
+        this(MINECRAFT_DIR);
+    }
+
+    public StorageLedger(String minecraftDir) {
+        this.root = Paths.get(minecraftDir);
+        this.journalPath = root.resolve(LEDGER_FILE);
+        load();
+    }
+
+    /**
+     * Account for a file that was just written or replaced
+     */
+    public synchronized void recordWrite(Path file) {
+        String key = keyOf(file);
+        if (key == null) {
+            return;
+        }
+        try {
+            long size = Files.size(file);
+            Long previous = files.get(key);
+            if (previous == null || previous != size) {
+                apply(key, size);
+                appendRecord("+" + size + "\t" + key);
+            }
+        } catch (IOException e) {
+            recordDelete(file);
+        }
+    }
+
+    /**
+     * Account for a file that is gone from disk
+     */
+    public synchronized void recordDelete(Path file) {
+        String key = keyOf(file);
+        if (key != null && files.containsKey(key)) {
+            apply(key, -1);
+            appendRecord("-\t" + key);
+        }
+    }
+
+    /**
+     * Delete a tracked file; returns the bytes freed
+     */
+    public synchronized long delete(Path file) throws IOException {
+        long size = getSize(file);
+        Files.deleteIfExists(file);
+        recordDelete(file);
+        return Math.max(0, size);
+    }
+
+    /**
+     * Delete a directory tree; returns the bytes freed
+     */
+    public synchronized long deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return 0;
+        }
+        long[] freed = new long[1];
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                freed[0] += delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.deleteIfExists(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return freed[0];
+    }
+
+    /**
+     * Re-stat one directory, e.g. after an installer wrote into it without
+     * going through the ledger; cost is bounded by that directory
+     */
+    public synchronized void reconcile(Path dir) {
+        String prefix = keyOf(dir);
+        if (prefix == null) {
+            return;
+        }
+        for (String key : new ArrayList<>(files.keySet())) {
+            if (key.startsWith(prefix + "/") && !Files.isRegularFile(root.resolve(key))) {
+                recordDelete(root.resolve(key));
+            }
+        }
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!isTransient(file)) {
+                        recordWrite(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to reconcile " + dir, e);
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Bytes under versions/&lt;version&gt;/ (jar, JSON and compiled metadata)
+     */
+    public synchronized long getVersionBytes(String version) {
+        return versionBytes.getOrDefault(version, 0L);
+    }
+
+    public synchronized long getLibraryBytes() {
+        return rootBytes.getOrDefault("libraries", 0L);
+    }
+
+    public synchronized long getAssetBytes() {
+        return rootBytes.getOrDefault("assets", 0L);
+    }
+
+    /**
+     * Recorded size of a file, or -1 if it is not tracked
+     */
+    public synchronized long getSize(Path file) {
+        String key = keyOf(file);
+        Long size = key != null ? files.get(key) : null;
+        return size != null ? size : -1;
+    }
+
+    /**
+     * Versions that currently occupy space under versions/
+     */
+    public synchronized Set<String> getVersions() {
+        return new TreeSet<>(versionBytes.keySet());
+    }
+
+    /**
+     * Rewrite the journal as one record per live file
+     */
+    public synchronized void compact() {
+        closeJournal();
+        Path temp = journalPath.resolveSibling(LEDGER_FILE + ".tmp");
+        try {
+            Files.createDirectories(root);
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : files.entrySet()) {
+                    out.write("+" + entry.getValue() + "\t" + entry.getKey());
+                    out.newLine();
+                }
+            }
+            Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalRecords = files.size();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to compact storage ledger", e);
+        }
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        if (!Files.exists(journalPath) || !replay()) {
+            rebuild();
+            LOGGER.info("Rebuilt storage ledger from disk: " + files.size() + " files, " + totalBytes
+                    + " bytes in " + (System.currentTimeMillis() - start) + " ms");
+            return;
+        }
+        if (journalRecords > files.size() * 2 + COMPACT_SLACK) {
+            compact();
+        }
+    }
+
+    /**
+     * Apply the journal; a torn final record from a crash (no trailing
+     * newline, or one that does not parse) is cut off, anything malformed
+     * before it means the journal cannot be trusted
+     */
+    private boolean replay() {
+        try {
+            byte[] data = Files.readAllBytes(journalPath);
+            int valid = 0;
+            int start = 0;
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != '\n') {
+                    continue;
+                }
+                String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+                boolean last = i == data.length - 1;
+                if (!applyRecord(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line)) {
+                    if (!last) {
+                        LOGGER.warning("Malformed storage ledger record, rebuilding");
+                        return false;
+                    }
+                    break;
+                }
+                journalRecords++;
+                start = i + 1;
+                valid = start;
+            }
+            if (valid < data.length) {
+                LOGGER.info("Dropping torn storage ledger record of " + (data.length - valid) + " bytes");
+                try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unreadable storage ledger, rebuilding", e);
+            return false;
+        }
+    }
+
+    private boolean applyRecord(String line) {
+        int tab = line.indexOf('\t');
+        if (tab < 1 || tab == line.length() - 1) {
+            return false;
+        }
+        String key = line.substring(tab + 1);
+        if (!TRACKED_ROOTS.contains(topOf(key)) || key.indexOf('/') < 0) {
+            return false;
+        }
+        if (line.charAt(0) == '+') {
+            long size;
+            try {
+                size = Long.parseLong(line.substring(1, tab));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (size < 0) {
+                return false;
+            }
+            apply(key, size);
+            return true;
+        }
+        if (line.charAt(0) == '-' && tab == 1) {
+            apply(key, -1);
+            return true;
+        }
+        return false;
+    }
+
+    private void rebuild() {
+        files.clear();
+        versionBytes.clear();
+        versionFiles.clear();
+        rootBytes.clear();
+        totalBytes = 0;
+        for (String tracked : TRACKED_ROOTS) {
+            Path dir = root.resolve(tracked);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try {
+                Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String key = keyOf(file);
+                        if (key != null && !isTransient(file)) {
+                            apply(key, attrs.size());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to scan " + dir, e);
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Update the in-memory totals; a negative size removes the file
+     */
+    private void apply(String key, long size) {
+        Long previous = size < 0 ? files.remove(key) : files.put(key, size);
+        if (previous == null && size < 0) {
+            return;
+        }
+        long delta = Math.max(0, size) - (previous != null ? previous : 0);
+        totalBytes += delta;
+        rootBytes.merge(topOf(key), delta, Long::sum);
+
+        String version = versionOf(key);
+        if (version != null) {
+            int fileDelta = previous == null ? 1 : size < 0 ? -1 : 0;
+            if (versionFiles.merge(version, fileDelta, Integer::sum) <= 0) {
+                versionFiles.remove(version);
+                versionBytes.remove(version);
+            } else {
+                versionBytes.merge(version, delta, Long::sum);
+            }
+        }
+    }
+
+    private void appendRecord(String record) {
+        try {
+            if (journal == null) {
+                Files.createDirectories(root);
+                journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            journal.write(record);
+            journal.newLine();
+            journal.flush();
+            journalRecords++;
+        } catch (IOException e) {
+            // A journal that missed a record is worse than none; rebuild on next start
+            LOGGER.log(Level.WARNING, "Failed to update storage ledger", e);
+            closeJournal();
+            try {
+                Files.deleteIfExists(journalPath);
+            } catch (IOException ignored) {
+                // Best effort
+            }
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.fine("Failed to close storage ledger: " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    /**
+     * Ledger key of a path: relative to the Minecraft directory with '/'
+     * separators, or null if it lies outside the tracked roots
+     */
+    private String keyOf(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path base = root.toAbsolutePath().normalize();
+        if (!absolute.startsWith(base) || absolute.equals(base)) {
+            return null;
+        }
+        String key = base.relativize(absolute).toString().replace('\\', '/');
+        if (!TRACKED_ROOTS.contains(topOf(key)) || key.indexOf('\n') >= 0) {
+            return null;
+        }
+        return key;
+    }
+
+    private static String topOf(String key) {
+        int slash = key.indexOf('/');
+        return slash < 0 ? key : key.substring(0, slash);
+    }
+
+    private static String versionOf(String key) {
+        if (!key.startsWith("versions/")) {
+            return null;
+        }
+        int end = key.indexOf('/', "versions/".length());
+        return end < 0 ? null : key.substring("versions/".length(), end);
+    }
+
+    private static boolean isTransient(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".part") || name.endsWith(".tmp");
+    }
+}
@@ -0,0 +1,116 @@
+package com.mclaunch.launcher;
+
+import java.time.OffsetDateTime;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, indexed snapshot of the version manifest
+ * Built once per refresh and published atomically, so readers never lock
+ */
+public final class VersionCatalog {
+    private static final Comparator<VersionManifest.VersionInfo> NEWEST_FIRST =
+            Comparator.comparingLong((VersionManifest.VersionInfo v) -> releaseEpochMillis(v.getReleaseTime()))
+                    .reversed();
+
+    private final Map<String, VersionManifest.VersionInfo> byId;
+    private final Map<String, List<VersionManifest.VersionInfo>> byType;
+    private final List<VersionManifest.VersionInfo> all;
+    private final String latestRelease;
+    private final String latestSnapshot;
+    private final long createdAt;
+
+    private VersionCatalog(Collection<VersionManifest.VersionInfo> versions,
+                           String latestRelease, String latestSnapshot, long createdAt) {
+        List<VersionManifest.VersionInfo> sorted = new ArrayList<>(versions);
+        sorted.sort(NEWEST_FIRST);
+
+        Map<String, VersionManifest.VersionInfo> ids = new HashMap<>(sorted.size() * 2);
+        Map<String, List<VersionManifest.VersionInfo>> types = new LinkedHashMap<>();
+        for (VersionManifest.VersionInfo info : sorted) {
+            ids.putIfAbsent(info.getId(), info);
+            String type = info.getType() != null ? info.getType() : "release";
+            types.computeIfAbsent(type, t -> new ArrayList<>()).add(info);
+        }
+        for (Map.Entry<String, List<VersionManifest.VersionInfo>> entry : types.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        this.all = Collections.unmodifiableList(sorted);
+        this.byId = Collections.unmodifiableMap(ids);
+        this.byType = Collections.unmodifiableMap(types);
+        this.latestRelease = latestRelease != null ? latestRelease : firstOfType("release");
+        this.latestSnapshot = latestSnapshot != null ? latestSnapshot : firstOfType("snapshot");
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Build a snapshot; explicit latest pointers win over the computed ones
+     */
+    public static VersionCatalog of(Collection<VersionManifest.VersionInfo> versions,
+                                    String latestRelease, String latestSnapshot) {
+        return new VersionCatalog(versions, latestRelease, latestSnapshot, System.currentTimeMillis());
+    }
+
+    public static VersionCatalog empty() {
+        return new VersionCatalog(Collections.emptyList(), null, null, 0);
+    }
+
+    private String firstOfType(String type) {
+        List<VersionManifest.VersionInfo> list = byType.get(type);
+        return list == null || list.isEmpty() ? null : list.get(0).getId();
+    }
+
+    public VersionManifest.VersionInfo get(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Versions of one type, newest first
+     */
+    public List<VersionManifest.VersionInfo> ofType(String type) {
+        List<VersionManifest.VersionInfo> list = byType.get(type);
+        return list != null ? list : Collections.emptyList();
+    }
+
+    /**
+     * All versions, newest first
+     */
+    public List<VersionManifest.VersionInfo> all() {
+        return all;
+    }
+
+    public String getLatestRelease() { return latestRelease; }
+
+    public String getLatestSnapshot() { return latestSnapshot; }
+
+    public long getCreatedAt() { return createdAt; }
+
+    public int size() { return all.size(); }
+
+    public boolean isEmpty() { return all.isEmpty(); }
+
+    static long releaseEpochMillis(String releaseTime) {
+        if (releaseTime == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return OffsetDateTime.parse(releaseTime).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(releaseTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return Long.MIN_VALUE;
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.mclaunch.launcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps installed versions within a storage budget
+ * Versions are evicted least recently played first (by UserProfile.lastPlayed,
+ * which also counts for the versions a loader profile inherits from). Libraries
+ * and asset objects are reference counted across all installed versions and
+ * only deleted once no remaining version uses them.
+ */
+public class VersionEvictor {
+    private static final Logger LOGGER = Logger.getLogger(VersionEvictor.class.getName());
+    private static final int MAX_INHERITANCE_DEPTH = 8;
+
+    private final String minecraftDir;
+    private final StorageLedger ledger;
+    private final VersionMetadataCache metadataCache;
+    private final MavenResolver mavenResolver;
+    private final Map<String, Object> installLocks;
+
+    VersionEvictor(String minecraftDir, StorageLedger ledger, VersionMetadataCache metadataCache,
+                   MavenResolver mavenResolver, Map<String, Object> installLocks) {
+        this.minecraftDir = minecraftDir;
+        this.ledger = ledger;
+        this.metadataCache = metadataCache;
+        this.mavenResolver = mavenResolver;
+        this.installLocks = installLocks;
+    }
+
+    /**
+     * Evict versions until tracked storage fits in budgetBytes
+     * Pinned versions (e.g. running ones) and everything they inherit from
+     * are never evicted, and neither is a version another installed one
+     * inherits from.
+     */
+    public EvictionReport enforce(long budgetBytes, Collection<ProfileManager.UserProfile> profiles,
+                                  Set<String> pinnedVersions) {
+        EvictionReport report = new EvictionReport();
+        report.bytesBefore = ledger.getTotalBytes();
+        if (report.bytesBefore <= budgetBytes) {
+            report.bytesAfter = report.bytesBefore;
+            return report;
+        }
+
+        Set<String> installed = ledger.getVersions();
+        Map<String, String> parents = new HashMap<>();
+        Map<String, Set<String>> references = new HashMap<>();
+        Map<String, Integer> refCounts = new HashMap<>();
+        boolean referencesComplete = true;
+        for (String version : installed) {
+            VersionMetadata metadata = loadQuietly(version);
+            // An unreadable version may use anything; shared files are then left alone
+            referencesComplete &= metadata != null;
+            if (metadata != null && metadata.getInheritsFrom() != null) {
+                parents.put(version, metadata.getInheritsFrom());
+            }
+            Set<String> refs = referencesOf(version, metadata);
+            references.put(version, refs);
+            for (String ref : refs) {
+                refCounts.merge(ref, 1, Integer::sum);
+            }
+        }
+
+        Map<String, Long> lastPlayed = new HashMap<>();
+        if (profiles != null) {
+            for (ProfileManager.UserProfile profile : profiles) {
+                for (String version : chainOf(profile.getVersion(), parents)) {
+                    lastPlayed.merge(version, profile.getLastPlayed(), Math::max);
+                }
+            }
+        }
+        Set<String> protectedVersions = new HashSet<>();
+        if (pinnedVersions != null) {
+            for (String pinned : pinnedVersions) {
+                protectedVersions.addAll(chainOf(pinned, parents));
+            }
+        }
+
+        List<String> candidates = new ArrayList<>();
+        for (String version : installed) {
+            if (!protectedVersions.contains(version)) {
+                candidates.add(version);
+            }
+        }
+        candidates.sort(Comparator.<String>comparingLong(v -> lastPlayed.getOrDefault(v, 0L))
+                .thenComparing(Comparator.<String>comparingLong(ledger::getVersionBytes).reversed()));
+
+        Set<String> remaining = new HashSet<>(installed);
+        boolean progress = true;
+        while (ledger.getTotalBytes() > budgetBytes && progress) {
+            progress = false;
+            for (String version : candidates) {
+                if (!remaining.contains(version) || hasDependents(version, remaining, parents)) {
+                    continue;
+                }
+                if (evict(version, referencesComplete ? references.get(version) : Set.of(), refCounts, report)) {
+                    remaining.remove(version);
+                }
+                candidates.remove(version);
+                progress = true;
+                break;
+            }
+        }
+
+        report.bytesAfter = ledger.getTotalBytes();
+        if (!report.evicted.isEmpty()) {
+            LOGGER.info(report.toString());
+        }
+        if (report.bytesAfter > budgetBytes) {
+            LOGGER.warning("Storage still over budget after eviction: " + report.bytesAfter + " > " + budgetBytes);
+        }
+        return report;
+    }
+
+    private boolean evict(String version, Set<String> refs, Map<String, Integer> refCounts, EvictionReport report) {
+        synchronized (installLocks.computeIfAbsent(version, v -> new Object())) {
+            long freed = 0;
+            try {
+                freed += ledger.deleteTree(Paths.get(minecraftDir, "versions", version));
+                Files.deleteIfExists(Paths.get(minecraftDir, "libraries", ".resolved", version + ".graph"));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to evict version " + version, e);
+                report.evictedBytes += freed;
+                return false;
+            }
+            // Shared files go only when the last version referencing them is gone
+            for (String ref : refs) {
+                if (refCounts.merge(ref, -1, Integer::sum) > 0) {
+                    continue;
+                }
+                refCounts.remove(ref);
+                try {
+                    long size = ledger.delete(Paths.get(minecraftDir, ref));
+                    freed += size;
+                    report.sharedBytes += size;
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to delete unreferenced " + ref, e);
+                }
+            }
+            report.evicted.add(version);
+            report.evictedBytes += freed;
+            return true;
+        }
+    }
+
+    /**
+     * Files outside versions/ that a version needs: its own libraries, its
+     * resolved loader dependencies, its asset index and that index's objects
+     * (relative to the Minecraft directory)
+     */
+    private Set<String> referencesOf(String version, VersionMetadata metadata) {
+        Set<String> refs = new HashSet<>();
+        if (metadata == null) {
+            return refs;
+        }
+        for (VersionMetadata.LibraryEntry library : metadata.getLibraries()) {
+            if (library.getPath() != null) {
+                refs.add("libraries/" + library.getPath());
+            }
+        }
+        for (VersionMetadata.LibraryEntry library : mavenResolver.getResolvedLibraries(version)) {
+            if (library.getPath() != null) {
+                refs.add("libraries/" + library.getPath());
+            }
+        }
+
+        String indexId = metadata.getAssetIndexId();
+        if (indexId == null) {
+            return refs;
+        }
+        String indexRef = "assets/indexes/" + indexId + ".json";
+        refs.add(indexRef);
+        Path indexPath = Paths.get(minecraftDir, indexRef);
+        if (!Files.exists(indexPath)) {
+            return refs;
+        }
+        try {
+            for (String hash : AssetManager.readIndexHashes(indexPath)) {
+                refs.add("assets/objects/" + hash.substring(0, 2) + "/" + hash);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Without the object list nothing of this index may be treated as unreferenced
+            LOGGER.log(Level.WARNING, "Unreadable asset index " + indexPath + ", keeping its objects", e);
+            refs.remove(indexRef);
+        }
+        return refs;
+    }
+
+    private VersionMetadata loadQuietly(String version) {
+        try {
+            return metadataCache.loadCompiled(version);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unreadable metadata for " + version, e);
+            return null;
+        }
+    }
+
+    private static List<String> chainOf(String version, Map<String, String> parents) {
+        List<String> chain = new ArrayList<>();
+        for (String v = version; v != null && chain.size() <= MAX_INHERITANCE_DEPTH; v = parents.get(v)) {
+            chain.add(v);
+        }
+        return chain;
+    }
+
+    private static boolean hasDependents(String version, Set<String> remaining, Map<String, String> parents) {
+        for (String other : remaining) {
+            if (version.equals(parents.get(other))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Outcome of one enforce call
+     */
+    public static class EvictionReport {
+        private final List<String> evicted = new ArrayList<>();
+        private long bytesBefore;
+        private long bytesAfter;
+        private long evictedBytes;
+        private long sharedBytes;
+
+        public List<String> getEvicted() { return evicted; }
+        public long getBytesBefore() { return bytesBefore; }
+        public long getBytesAfter() { return bytesAfter; }
+        public long getEvictedBytes() { return evictedBytes; }
+        public long getSharedBytes() { return sharedBytes; }
+
+        @Override
+        public String toString() {
+            return String.format("Evicted %d version(s) %s: freed %d MB (%d MB shared files), %d MB -> %d MB",
+                    evicted.size(), evicted, evictedBytes >> 20, sharedBytes >> 20, bytesBefore >> 20, bytesAfter >> 20);
+        }
+    }
+}
@@ -2,15 +2,20 @@ package com.mclaunch.launcher;
 
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -21,27 +26,41 @@ import java.time.format.DateTimeFormatter;
  */
 public class VersionManifest {
     private static final String MANIFEST_URL = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
-    private static final String USER_AGENT = "HarmonyOS-MC-Launcher/1.0";
-    private static final int CONNECTION_TIMEOUT = 10000; // 10 seconds
-    private static final int READ_TIMEOUT = 15000; // 15 seconds
+    private static final String CACHE_FILE = "/data/storage/el2/base/minecraft/version_manifest.json";
+    private static final long MIN_REFRESH_INTERVAL = 60 * 1000; // 1 minute between background attempts
     private static final Logger LOGGER = Logger.getLogger(VersionManifest.class.getName());
     
-    private Map<String, Object> manifest;
-    private List<VersionInfo> versions;
-    private long lastUpdateTime;
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "manifest-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final AtomicReference<VersionCatalog> catalog;
+    private final AtomicReference<CompletableFuture<Boolean>> pendingRefresh;
+    private volatile long lastUpdateTime;
+    private volatile long lastRefreshAttempt;
+    private final String manifestUrl;
     private String cacheFilePath;
     
     /**
      * Constructor initializes the version manifest
      */
     public VersionManifest() {
-        this.manifest = new HashMap<>();
-        this.versions = new ArrayList<>();
+        this(MANIFEST_URL, CACHE_FILE);
+    }
+    
+    /**
+     * Manifest from another endpoint (e.g. a local mirror) with its own cache file
+     */
+    public VersionManifest(String manifestUrl, String cacheFilePath) {
+        this.manifestUrl = manifestUrl;
+        this.catalog = new AtomicReference<>(); // defaults are built on first read
+        this.pendingRefresh = new AtomicReference<>();
         this.lastUpdateTime = 0;
-        this.cacheFilePath = "/data/storage/el2/base/minecraft/version_manifest.json";
+        this.cacheFilePath = cacheFilePath;
         
         LOGGER.info("VersionManifest initialized");
-        initializeDefaultVersions();
     }
     
     /**
@@ -49,21 +68,26 @@ public class VersionManifest {
      */
     private void initializeDefaultVersions() {
         try {
-            // Add some default versions for offline functionality
-            String[] defaultVersions = {
-                "1.20.4", "1.20.3", "1.20.2", "1.20.1",
-                "1.19.4", "1.19.3", "1.19.2", "1.19.1",
-                "1.18.2", "1.18.1", "1.17.1", "1.16.5"
+            // Add some default versions for offline functionality, with their release dates
+            String[][] defaultVersions = {
+                {"1.20.4", "2023-12-07T00:00:00+00:00"}, {"1.20.3", "2023-12-05T00:00:00+00:00"},
+                {"1.20.2", "2023-09-20T00:00:00+00:00"}, {"1.20.1", "2023-06-12T00:00:00+00:00"},
+                {"1.19.4", "2023-03-14T00:00:00+00:00"}, {"1.19.3", "2022-12-07T00:00:00+00:00"},
+                {"1.19.2", "2022-08-05T00:00:00+00:00"}, {"1.19.1", "2022-07-27T00:00:00+00:00"},
+                {"1.18.2", "2022-02-28T00:00:00+00:00"}, {"1.18.1", "2021-12-10T00:00:00+00:00"},
+                {"1.17.1", "2021-07-06T00:00:00+00:00"}, {"1.16.5", "2021-01-15T00:00:00+00:00"}
             };
             
-            for (String version : defaultVersions) {
-                VersionInfo info = new VersionInfo();
-                info.setId(version);
-                info.setType(version.contains("w") || version.contains("pre") ? "snapshot" : "release");
-                info.setUrl("https://launchermeta.mojang.com/v1/packages/" + version + "/" + version + ".json");
-                info.setReleaseTime(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-                this.versions.add(info);
+            List<VersionInfo> defaults = new ArrayList<>();
+            for (String[] entry : defaultVersions) {
+                String version = entry[0];
+                defaults.add(new VersionInfo(version,
+                        version.contains("w") || version.contains("pre") ? "snapshot" : "release",
+                        "https://launchermeta.mojang.com/v1/packages/" + version + "/" + version + ".json",
+                        entry[1]));
             }
+            // A manifest parsed in the meantime takes precedence
+            this.catalog.compareAndSet(null, VersionCatalog.of(defaults, null, null));
             
             LOGGER.info("Default versions initialized: " + defaultVersions.length + " versions");
         } catch (Exception e) {
@@ -78,32 +102,23 @@ public class VersionManifest {
         try {
             LOGGER.info("Downloading version manifest from Mojang...");
             
-            HttpURLConnection connection = createSecureConnection();
-            if (connection == null) {
-                LOGGER.warning("Failed to create connection, using cached data");
-                return loadCachedManifest();
+            String jsonResponse = LauncherHttpClient.shared().getString(manifestUrl).get();
+            if (parseManifestJson(jsonResponse)) {
+                saveCachedManifest(jsonResponse);
+                this.lastUpdateTime = System.currentTimeMillis();
+                LOGGER.info("Version manifest downloaded and parsed successfully");
+                return true;
             }
             
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                String jsonResponse = readResponse(connection);
-                if (parseManifestJson(jsonResponse)) {
-                    saveCachedManifest(jsonResponse);
-                    this.lastUpdateTime = System.currentTimeMillis();
-                    LOGGER.info("Version manifest downloaded and parsed successfully");
-                    return true;
-                }
-            } else {
-                LOGGER.warning("HTTP error response: " + responseCode);
-            }
-            
-            connection.disconnect();
-            
             // Fallback to cached data if available
             return loadCachedManifest();
             
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Network error downloading manifest, using fallback data", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return loadCachedManifest();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Network error downloading manifest, using fallback data",
+                    LauncherHttpClient.unwrap(e));
             return loadCachedManifest();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Failed to download manifest", e);
@@ -112,62 +127,64 @@ public class VersionManifest {
     }
     
     /**
-     * Create a secure HTTP connection with proper timeouts and headers
+     * Asynchronous downloadManifest; shares a refresh already in progress
      */
-    private HttpURLConnection createSecureConnection() {
-        try {
-            URL url = new URL(MANIFEST_URL);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            
-            // Set proper headers for HarmonyOS
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("User-Agent", USER_AGENT);
-            connection.setRequestProperty("Accept", "application/json");
-            connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
-            connection.setConnectTimeout(CONNECTION_TIMEOUT);
-            connection.setReadTimeout(READ_TIMEOUT);
-            connection.setInstanceFollowRedirects(true);
-            
-            return connection;
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Failed to create HTTP connection", e);
-            return null;
-        }
+    public CompletableFuture<Boolean> downloadManifestAsync() {
+        return refreshAsync();
     }
     
     /**
-     * Read HTTP response with proper encoding handling
+     * Parse JSON manifest data (simplified implementation)
      */
-    private String readResponse(HttpURLConnection connection) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
-            
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            
-            return response.toString();
+    private boolean parseManifestJson(String jsonData) {
+        VersionCatalog parsed = parseCatalog(jsonData);
+        if (parsed == null) {
+            return false;
         }
+        this.catalog.set(parsed);
+        
+        // Update last modified time
+        this.lastUpdateTime = System.currentTimeMillis();
+        return true;
     }
     
     /**
-     * Parse JSON manifest data (simplified implementation)
+     * Catalog of manifest JSON data, built off to the side; null if unusable
      */
-    private boolean parseManifestJson(String jsonData) {
+    private static VersionCatalog parseCatalog(String jsonData) {
         try {
-            // TODO: Implement proper JSON parsing with HarmonyOS JSON library
-            // For now, this is a simplified implementation
             LOGGER.info("Parsing manifest JSON data...");
+            Map<String, Object> root = JsonParser.parseObject(jsonData);
+            List<Object> entries = JsonParser.getArray(root, "versions");
+            if (entries == null || entries.isEmpty()) {
+                LOGGER.warning("Manifest contains no versions");
+                return null;
+            }
             
-            // Update last modified time
-            this.lastUpdateTime = System.currentTimeMillis();
+            List<VersionInfo> parsed = new ArrayList<>(entries.size());
+            for (Object entry : entries) {
+                if (!(entry instanceof Map)) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> version = (Map<String, Object>) entry;
+                VersionInfo info = new VersionInfo(JsonParser.getString(version, "id"),
+                        JsonParser.getString(version, "type"),
+                        JsonParser.getString(version, "url"),
+                        JsonParser.getString(version, "releaseTime"));
+                if (info.getId() != null) {
+                    parsed.add(info);
+                }
+            }
             
-            return true;
+            Map<String, Object> latest = JsonParser.getObject(root, "latest");
+            // Build the whole snapshot off to the side, then publish it in one step
+            return VersionCatalog.of(parsed,
+                    JsonParser.getString(latest, "release"),
+                    JsonParser.getString(latest, "snapshot"));
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Failed to parse manifest JSON", e);
-            return false;
+            return null;
         }
     }
     
@@ -176,8 +193,12 @@ public class VersionManifest {
      */
     private void saveCachedManifest(String jsonData) {
         try {
-            // TODO: Implement file caching for offline use
             LOGGER.info("Saving manifest to cache...");
+            Path cacheFile = Paths.get(this.cacheFilePath);
+            Files.createDirectories(cacheFile.getParent());
+            Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.write(temp, jsonData.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Failed to save manifest cache", e);
         }
@@ -188,12 +209,93 @@ public class VersionManifest {
      */
     private boolean loadCachedManifest() {
         try {
-            // TODO: Implement cache loading
             LOGGER.info("Loading manifest from cache...");
-            return !this.versions.isEmpty(); // Return true if we have default versions
+            Path cacheFile = Paths.get(this.cacheFilePath);
+            if (Files.exists(cacheFile)) {
+                String jsonData = new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8);
+                if (parseManifestJson(jsonData)) {
+                    // Served from disk, keep it marked for a network refresh
+                    this.lastUpdateTime = Files.getLastModifiedTime(cacheFile).toMillis();
+                    return true;
+                }
+            }
+            return !currentCatalog().isEmpty(); // Return true if we have default versions
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Failed to load cached manifest", e);
-            return !this.versions.isEmpty();
+            return !currentCatalog().isEmpty();
+        }
+    }
+    
+    /**
+     * Publish the cached manifest as the first snapshot, dated by its file so
+     * it still counts as stale; never replaces a snapshot published meanwhile
+     */
+    private void seedFromCache() {
+        try {
+            Path cacheFile = Paths.get(this.cacheFilePath);
+            if (!Files.isRegularFile(cacheFile)) {
+                return;
+            }
+            long modified = Files.getLastModifiedTime(cacheFile).toMillis();
+            VersionCatalog cached = parseCatalog(new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8));
+            if (cached != null && this.catalog.compareAndSet(null, cached)) {
+                this.lastUpdateTime = modified;
+                LOGGER.info("Version catalog seeded from cached manifest");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read cached manifest", e);
+        }
+    }
+    
+    /**
+     * Get the current catalog snapshot without blocking
+     * A stale snapshot is still returned, with a refresh started in the background
+     */
+    public VersionCatalog getCatalog() {
+        if (isManifestStale()
+                && System.currentTimeMillis() - this.lastRefreshAttempt > MIN_REFRESH_INTERVAL) {
+            refreshAsync();
+        }
+        return currentCatalog();
+    }
+    
+    private VersionCatalog currentCatalog() {
+        VersionCatalog current = this.catalog.get();
+        if (current == null) {
+            // The last real manifest beats the built-in placeholders
+            seedFromCache();
+            current = this.catalog.get();
+        }
+        if (current == null) {
+            initializeDefaultVersions();
+            current = this.catalog.get();
+        }
+        return current != null ? current : VersionCatalog.empty();
+    }
+    
+    /**
+     * Refresh the manifest in the background; concurrent callers share one refresh
+     */
+    public CompletableFuture<Boolean> refreshAsync() {
+        while (true) {
+            CompletableFuture<Boolean> pending = this.pendingRefresh.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<Boolean> refresh = new CompletableFuture<>();
+            if (this.pendingRefresh.compareAndSet(null, refresh)) {
+                this.lastRefreshAttempt = System.currentTimeMillis();
+                REFRESH_EXECUTOR.execute(() -> {
+                    try {
+                        refresh.complete(downloadManifest());
+                    } catch (Throwable t) {
+                        refresh.completeExceptionally(t);
+                    } finally {
+                        this.pendingRefresh.compareAndSet(refresh, null);
+                    }
+                });
+                return refresh;
+            }
         }
     }
     
@@ -211,11 +313,9 @@ public class VersionManifest {
         List<String> versionList = new ArrayList<>();
         
         try {
-            for (VersionInfo version : this.versions) {
-                if (type != null && !version.getType().equals(type)) {
-                    continue;
-                }
-                
+            VersionCatalog snapshot = getCatalog();
+            List<VersionInfo> candidates = type != null ? snapshot.ofType(type) : snapshot.all();
+            for (VersionInfo version : candidates) {
                 if (!includeSnapshots && "snapshot".equals(version.getType())) {
                     continue;
                 }
@@ -241,20 +341,16 @@ public class VersionManifest {
         }
         
         try {
-            for (VersionInfo version : this.versions) {
-                if (versionId.equals(version.getId())) {
-                    return version;
-                }
+            VersionInfo known = getCatalog().get(versionId);
+            if (known != null) {
+                return known;
             }
             
             // Create mock version info if not found
             LOGGER.info("Version not found in manifest, creating mock data for: " + versionId);
-            VersionInfo info = new VersionInfo();
-            info.setId(versionId);
-            info.setType(isSnapshot(versionId) ? "snapshot" : "release");
-            info.setUrl("https://launchermeta.mojang.com/v1/packages/" + versionId + "/" + versionId + ".json");
-            info.setReleaseTime(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            return info;
+            return new VersionInfo(versionId, isSnapshot(versionId) ? "snapshot" : "release",
+                    "https://launchermeta.mojang.com/v1/packages/" + versionId + "/" + versionId + ".json",
+                    LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
             
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Failed to get version info for: " + versionId, e);
@@ -267,12 +363,8 @@ public class VersionManifest {
      */
     public String getLatestRelease() {
         try {
-            for (VersionInfo version : this.versions) {
-                if ("release".equals(version.getType())) {
-                    return version.getId();
-                }
-            }
-            return "1.20.4"; // Fallback
+            String latest = getCatalog().getLatestRelease();
+            return latest != null ? latest : "1.20.4"; // Fallback
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Failed to get latest release", e);
             return "1.20.4";
@@ -284,12 +376,8 @@ public class VersionManifest {
      */
     public String getLatestSnapshot() {
         try {
-            for (VersionInfo version : this.versions) {
-                if ("snapshot".equals(version.getType())) {
-                    return version.getId();
-                }
-            }
-            return "24w07a"; // Fallback
+            String latest = getCatalog().getLatestSnapshot();
+            return latest != null ? latest : "24w07a"; // Fallback
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Failed to get latest snapshot", e);
             return "24w07a";
@@ -328,40 +416,32 @@ public class VersionManifest {
     
     /**
      * Version information class with enhanced validation
+     * Immutable, so catalog snapshots can be shared between readers.
      */
     public static class VersionInfo {
-        private String id;
-        private String type;
-        private String url;
-        private String releaseTime;
+        private final String id;
+        private final String type;
+        private final String url;
+        private final String releaseTime;
         
-        public String getId() { return id; }
-        public void setId(String id) { 
-            if (id != null && !id.trim().isEmpty()) {
-                this.id = id.trim(); 
-            }
+        public VersionInfo(String id, String type, String url, String releaseTime) {
+            this.id = trimToNull(id);
+            this.type = trimToNull(type);
+            this.url = trimToNull(url);
+            this.releaseTime = trimToNull(releaseTime);
         }
         
-        public String getType() { return type; }
-        public void setType(String type) { 
-            if (type != null && !type.trim().isEmpty()) {
-                this.type = type.trim(); 
-            }
+        private static String trimToNull(String value) {
+            return value != null && !value.trim().isEmpty() ? value.trim() : null;
         }
         
+        public String getId() { return id; }
+        
+        public String getType() { return type; }
+        
         public String getUrl() { return url; }
-        public void setUrl(String url) { 
-            if (url != null && !url.trim().isEmpty()) {
-                this.url = url.trim(); 
-            }
-        }
         
         public String getReleaseTime() { return releaseTime; }
-        public void setReleaseTime(String releaseTime) { 
-            if (releaseTime != null && !releaseTime.trim().isEmpty()) {
-                this.releaseTime = releaseTime.trim(); 
-            }
-        }
         
         @Override
         public String toString() {
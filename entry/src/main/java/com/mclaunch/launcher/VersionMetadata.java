@@ -0,0 +1,372 @@
+package com.mclaunch.launcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Launch metadata resolved from a version JSON
+ * Rules are already evaluated for this device, so launching only needs
+ * the values held here
+ */
+public class VersionMetadata {
+    private static final String OS_NAME = "linux";
+
+    private String id;
+    private String inheritsFrom;
+    private String jarVersion;
+    private String mainClass;
+    private String assetIndexId;
+    private String assetIndexUrl;
+    private String assetIndexSha1;
+    private String clientUrl;
+    private String clientSha1;
+    private long clientSize;
+    private int javaMajorVersion; // 0 when the JSON does not say
+    private List<LibraryEntry> libraries = new ArrayList<>();
+    private List<String> jvmArguments = new ArrayList<>();
+    private List<String> gameArguments = new ArrayList<>();
+    private boolean legacyGameArguments; // from minecraftArguments, which repeats the whole command line
+
+    /**
+     * Resolve a parsed version JSON into launch metadata
+     */
+    public static VersionMetadata fromJson(Map<String, Object> json) {
+        VersionMetadata meta = new VersionMetadata();
+        meta.id = JsonParser.getString(json, "id");
+        meta.inheritsFrom = JsonParser.getString(json, "inheritsFrom");
+        meta.jarVersion = JsonParser.getString(json, "jar");
+        meta.mainClass = JsonParser.getString(json, "mainClass");
+
+        Map<String, Object> assetIndex = JsonParser.getObject(json, "assetIndex");
+        if (assetIndex != null) {
+            meta.assetIndexId = JsonParser.getString(assetIndex, "id");
+            meta.assetIndexUrl = JsonParser.getString(assetIndex, "url");
+            meta.assetIndexSha1 = JsonParser.getString(assetIndex, "sha1");
+        } else {
+            meta.assetIndexId = JsonParser.getString(json, "assets");
+        }
+
+        Map<String, Object> client = JsonParser.getObject(JsonParser.getObject(json, "downloads"), "client");
+        if (client != null) {
+            meta.clientUrl = JsonParser.getString(client, "url");
+            meta.clientSha1 = JsonParser.getString(client, "sha1");
+            meta.clientSize = JsonParser.getLong(client, "size", -1);
+        }
+        meta.javaMajorVersion = (int) JsonParser.getLong(JsonParser.getObject(json, "javaVersion"), "majorVersion", 0);
+
+        List<Object> libraries = JsonParser.getArray(json, "libraries");
+        if (libraries != null) {
+            for (Object item : libraries) {
+                if (item instanceof Map) {
+                    meta.addLibrary(asObject(item));
+                }
+            }
+        }
+
+        Map<String, Object> arguments = JsonParser.getObject(json, "arguments");
+        if (arguments != null) {
+            collectArguments(JsonParser.getArray(arguments, "jvm"), meta.jvmArguments);
+            collectArguments(JsonParser.getArray(arguments, "game"), meta.gameArguments);
+        } else {
+            String legacy = JsonParser.getString(json, "minecraftArguments");
+            if (legacy != null) {
+                meta.legacyGameArguments = true;
+                for (String arg : legacy.trim().split("\\s+")) {
+                    if (!arg.isEmpty()) {
+                        meta.gameArguments.add(arg);
+                    }
+                }
+            }
+        }
+
+        return meta;
+    }
+
+    /**
+     * Merge a loader profile (Fabric, Quilt, Forge) over the vanilla version it
+     * inherits from. Loader libraries come first and replace vanilla ones with
+     * the same group:artifact; arguments are appended to the parent's, except
+     * legacy minecraftArguments, which restate the full game command line and
+     * so replace the parent's.
+     */
+    public VersionMetadata inheritFrom(VersionMetadata parent) {
+        VersionMetadata merged = new VersionMetadata();
+        merged.id = id;
+        merged.inheritsFrom = null;
+        merged.jarVersion = jarVersion != null ? jarVersion
+                : parent.jarVersion != null ? parent.jarVersion : parent.id;
+        merged.mainClass = mainClass != null ? mainClass : parent.mainClass;
+        merged.assetIndexId = assetIndexId != null ? assetIndexId : parent.assetIndexId;
+        merged.assetIndexUrl = assetIndexId != null ? assetIndexUrl : parent.assetIndexUrl;
+        merged.assetIndexSha1 = assetIndexId != null ? assetIndexSha1 : parent.assetIndexSha1;
+        merged.clientUrl = clientUrl != null ? clientUrl : parent.clientUrl;
+        merged.clientSha1 = clientUrl != null ? clientSha1 : parent.clientSha1;
+        merged.clientSize = clientUrl != null ? clientSize : parent.clientSize;
+        merged.javaMajorVersion = javaMajorVersion != 0 ? javaMajorVersion : parent.javaMajorVersion;
+
+        // Only the child overrides parent libraries; the parent's own entries are all kept
+        Set<String> overridden = new HashSet<>();
+        for (LibraryEntry library : libraries) {
+            overridden.add(library.getArtifactKey());
+            merged.libraries.add(library);
+        }
+        for (LibraryEntry library : parent.libraries) {
+            if (!overridden.contains(library.getArtifactKey())) {
+                merged.libraries.add(library);
+            }
+        }
+
+        merged.jvmArguments.addAll(parent.jvmArguments);
+        merged.jvmArguments.addAll(jvmArguments);
+        if (legacyGameArguments) {
+            merged.gameArguments.addAll(gameArguments);
+        } else {
+            merged.gameArguments.addAll(parent.gameArguments);
+            merged.gameArguments.addAll(gameArguments);
+        }
+        merged.legacyGameArguments = legacyGameArguments || parent.legacyGameArguments;
+        return merged;
+    }
+
+    private void addLibrary(Map<String, Object> library) {
+        if (!rulesAllow(JsonParser.getArray(library, "rules"))) {
+            return;
+        }
+
+        String name = JsonParser.getString(library, "name");
+        Map<String, Object> downloads = JsonParser.getObject(library, "downloads");
+        Map<String, Object> artifact = JsonParser.getObject(downloads, "artifact");
+        if (artifact != null) {
+            libraries.add(LibraryEntry.fromDownload(name, artifact, false));
+        } else if (downloads == null && name != null) {
+            // Loader style entry with only maven coordinates and a repository
+            LibraryEntry entry = new LibraryEntry();
+            entry.name = name;
+            entry.path = toMavenPath(name);
+            String repo = JsonParser.getString(library, "url");
+            if (repo != null && entry.path != null) {
+                entry.url = (repo.endsWith("/") ? repo : repo + "/") + entry.path;
+            }
+            entry.sha1 = JsonParser.getString(library, "sha1");
+            entry.size = JsonParser.getLong(library, "size", -1);
+            if (entry.path != null) {
+                libraries.add(entry);
+            }
+        }
+
+        Map<String, Object> natives = JsonParser.getObject(library, "natives");
+        String classifier = JsonParser.getString(natives, OS_NAME);
+        if (classifier != null) {
+            classifier = classifier.replace("${arch}", System.getProperty("os.arch", "").contains("64") ? "64" : "32");
+            Map<String, Object> nativeArtifact = JsonParser.getObject(
+                    JsonParser.getObject(downloads, "classifiers"), classifier);
+            if (nativeArtifact != null) {
+                libraries.add(LibraryEntry.fromDownload(name, nativeArtifact, true));
+            }
+        }
+    }
+
+    private static void collectArguments(List<Object> source, List<String> target) {
+        if (source == null) {
+            return;
+        }
+        for (Object item : source) {
+            if (item instanceof String) {
+                target.add((String) item);
+            } else if (item instanceof Map) {
+                Map<String, Object> conditional = asObject(item);
+                if (!rulesAllow(JsonParser.getArray(conditional, "rules"))) {
+                    continue;
+                }
+                Object value = conditional.get("value");
+                if (value instanceof String) {
+                    target.add((String) value);
+                } else if (value instanceof List) {
+                    for (Object v : (List<?>) value) {
+                        if (v instanceof String) {
+                            target.add((String) v);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate Mojang rules for this device. Feature-gated rules (demo mode,
+     * custom resolution, quick play) are treated as not matching.
+     */
+    static boolean rulesAllow(List<Object> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return true;
+        }
+        boolean allowed = false;
+        for (Object item : rules) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Map<String, Object> rule = asObject(item);
+            if (JsonParser.getObject(rule, "features") != null) {
+                continue;
+            }
+            Map<String, Object> os = JsonParser.getObject(rule, "os");
+            if (os != null) {
+                String osName = JsonParser.getString(os, "name");
+                if (osName != null && !OS_NAME.equals(osName)) {
+                    continue;
+                }
+                String arch = JsonParser.getString(os, "arch");
+                if (arch != null && !System.getProperty("os.arch", "").contains(arch)) {
+                    continue;
+                }
+            }
+            allowed = "allow".equals(JsonParser.getString(rule, "action"));
+        }
+        return allowed;
+    }
+
+    /**
+     * Convert maven coordinates (group:artifact:version[:classifier][@ext])
+     * into a repository relative path
+     */
+    static String toMavenPath(String coords) {
+        String extension = "jar";
+        int at = coords.indexOf('@');
+        if (at >= 0) {
+            extension = coords.substring(at + 1);
+            coords = coords.substring(0, at);
+        }
+        String[] parts = coords.split(":");
+        if (parts.length < 3) {
+            return null;
+        }
+        String group = parts[0].replace('.', '/');
+        String artifact = parts[1];
+        String version = parts[2];
+        String classifier = parts.length > 3 ? "-" + parts[3] : "";
+        return group + "/" + artifact + "/" + version + "/"
+                + artifact + "-" + version + classifier + "." + extension;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    // Getters and setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getInheritsFrom() { return inheritsFrom; }
+    public void setInheritsFrom(String inheritsFrom) { this.inheritsFrom = inheritsFrom; }
+
+    /**
+     * Version whose client jar goes on the classpath, or null for this version's own jar
+     */
+    public String getJarVersion() { return jarVersion; }
+    public void setJarVersion(String jarVersion) { this.jarVersion = jarVersion; }
+
+    public String getMainClass() { return mainClass; }
+    public void setMainClass(String mainClass) { this.mainClass = mainClass; }
+
+    public String getAssetIndexId() { return assetIndexId; }
+    public void setAssetIndexId(String assetIndexId) { this.assetIndexId = assetIndexId; }
+
+    public String getAssetIndexUrl() { return assetIndexUrl; }
+    public void setAssetIndexUrl(String assetIndexUrl) { this.assetIndexUrl = assetIndexUrl; }
+
+    public String getAssetIndexSha1() { return assetIndexSha1; }
+    public void setAssetIndexSha1(String assetIndexSha1) { this.assetIndexSha1 = assetIndexSha1; }
+
+    public String getClientUrl() { return clientUrl; }
+    public void setClientUrl(String clientUrl) { this.clientUrl = clientUrl; }
+
+    public String getClientSha1() { return clientSha1; }
+    public void setClientSha1(String clientSha1) { this.clientSha1 = clientSha1; }
+
+    public long getClientSize() { return clientSize; }
+    public void setClientSize(long clientSize) { this.clientSize = clientSize; }
+
+    /**
+     * Java major version the game needs (javaVersion.majorVersion), or 0 if unknown
+     */
+    public int getJavaMajorVersion() { return javaMajorVersion; }
+    public void setJavaMajorVersion(int javaMajorVersion) { this.javaMajorVersion = javaMajorVersion; }
+
+    public boolean isLegacyGameArguments() { return legacyGameArguments; }
+    public void setLegacyGameArguments(boolean legacyGameArguments) { this.legacyGameArguments = legacyGameArguments; }
+
+    public List<LibraryEntry> getLibraries() { return Collections.unmodifiableList(libraries); }
+    public void setLibraries(List<LibraryEntry> libraries) { this.libraries = new ArrayList<>(libraries); }
+
+    public List<String> getJvmArguments() { return Collections.unmodifiableList(jvmArguments); }
+    public void setJvmArguments(List<String> jvmArguments) { this.jvmArguments = new ArrayList<>(jvmArguments); }
+
+    public List<String> getGameArguments() { return Collections.unmodifiableList(gameArguments); }
+    public void setGameArguments(List<String> gameArguments) { this.gameArguments = new ArrayList<>(gameArguments); }
+
+    /**
+     * A library artifact that passed rule evaluation
+     */
+    public static class LibraryEntry {
+        private String name;
+        private String path;
+        private String url;
+        private String sha1;
+        private long size = -1;
+        private boolean nativeLibrary;
+
+        static LibraryEntry fromDownload(String name, Map<String, Object> download, boolean nativeLibrary) {
+            LibraryEntry entry = new LibraryEntry();
+            entry.name = name;
+            entry.path = JsonParser.getString(download, "path");
+            if (entry.path == null && name != null) {
+                entry.path = toMavenPath(name);
+            }
+            entry.url = JsonParser.getString(download, "url");
+            entry.sha1 = JsonParser.getString(download, "sha1");
+            entry.size = JsonParser.getLong(download, "size", -1);
+            entry.nativeLibrary = nativeLibrary;
+            return entry;
+        }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        /**
+         * group:artifact[:classifier] used to detect the same library in two versions
+         * A legacy natives jar shares its artifact's name, so it gets a
+         * natives suffix to keep both apart.
+         */
+        public String getArtifactKey() {
+            String key;
+            if (name == null) {
+                key = path;
+            } else {
+                String[] parts = name.split(":");
+                key = parts.length < 3 ? name
+                        : parts.length > 3 ? parts[0] + ":" + parts[1] + ":" + parts[3] : parts[0] + ":" + parts[1];
+            }
+            return nativeLibrary ? key + ":natives" : key;
+        }
+
+        public String getPath() { return path; }
+        public void setPath(String path) { this.path = path; }
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public String getSha1() { return sha1; }
+        public void setSha1(String sha1) { this.sha1 = sha1; }
+
+        public long getSize() { return size; }
+        public void setSize(long size) { this.size = size; }
+
+        public boolean isNativeLibrary() { return nativeLibrary; }
+        public void setNativeLibrary(boolean nativeLibrary) { this.nativeLibrary = nativeLibrary; }
+    }
+}
@@ -0,0 +1,306 @@
+package com.mclaunch.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled binary cache of version JSON launch metadata
+ * Stored next to the JSON as versions/&lt;v&gt;/&lt;v&gt;.bin and read through a
+ * memory mapping, so launching an installed version does not parse JSON.
+ * The file is regenerated only when the source JSON changes.
+ */
+public class VersionMetadataCache {
+    private static final String VERSIONS_DIR = "/data/storage/el2/base/minecraft/versions";
+    private static final int MAGIC = 0x4D43564D; // "MCVM"
+    private static final int FORMAT_VERSION = 4;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 8;
+    private static final Logger LOGGER = Logger.getLogger(VersionMetadataCache.class.getName());
+
+    private final String versionsDir;
+
+    public VersionMetadataCache() {
+        this(VERSIONS_DIR);
+    }
+
+    public VersionMetadataCache(String versionsDir) {
+        this.versionsDir = versionsDir;
+    }
+
+    /**
+     * Load launch metadata for an installed version, merged with the version
+     * it inherits from (loader profiles), each from its own compiled file
+     */
+    public VersionMetadata load(String version) throws IOException {
+        VersionMetadata meta = loadCompiled(version);
+        int depth = 0;
+        while (meta != null && meta.getInheritsFrom() != null) {
+            if (++depth > 8) {
+                throw new IOException("Inheritance chain too deep for " + version);
+            }
+            VersionMetadata parent = loadCompiled(meta.getInheritsFrom());
+            if (parent == null) {
+                throw new IOException(version + " inherits from missing version " + meta.getInheritsFrom());
+            }
+            String grandParent = parent.getInheritsFrom();
+            meta = meta.inheritFrom(parent);
+            meta.setInheritsFrom(grandParent);
+        }
+        return meta;
+    }
+
+    /**
+     * Load the unmerged metadata of one version JSON, compiling it only if
+     * the binary form is missing or out of date
+     */
+    public VersionMetadata loadCompiled(String version) throws IOException {
+        Path json = getJsonPath(version);
+        Path compiled = getCompiledPath(version);
+        if (!Files.exists(json)) {
+            return null;
+        }
+
+        long sourceSize = Files.size(json);
+        long sourceMtime = Files.getLastModifiedTime(json).toMillis();
+
+        if (Files.exists(compiled)) {
+            try {
+                VersionMetadata cached = read(compiled, sourceSize, sourceMtime, json);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Discarding unreadable metadata cache for " + version, e);
+            }
+        }
+
+        return compile(version);
+    }
+
+    /**
+     * Parse the source JSON and rewrite the binary form unconditionally
+     */
+    public VersionMetadata compile(String version) throws IOException {
+        Path json = getJsonPath(version);
+        byte[] source = Files.readAllBytes(json);
+        VersionMetadata meta = VersionMetadata.fromJson(
+                JsonParser.parseObject(new String(source, StandardCharsets.UTF_8)));
+        if (meta.getId() == null) {
+            meta.setId(version);
+        }
+
+        write(getCompiledPath(version), meta, source.length,
+                Files.getLastModifiedTime(json).toMillis(), crc(source));
+        LOGGER.info("Compiled launch metadata for " + version);
+        return meta;
+    }
+
+    /**
+     * Remove the compiled form, e.g. after the version was deleted
+     */
+    public void invalidate(String version) {
+        try {
+            Files.deleteIfExists(getCompiledPath(version));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete metadata cache for " + version, e);
+        }
+    }
+
+    public Path getJsonPath(String version) {
+        return Paths.get(versionsDir, version, version + ".json");
+    }
+
+    public Path getCompiledPath(String version) {
+        return Paths.get(versionsDir, version, version + ".bin");
+    }
+
+    private VersionMetadata read(Path compiled, long sourceSize, long sourceMtime, Path json) throws IOException {
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long cachedSize = buffer.getLong();
+            long cachedMtime = buffer.getLong();
+            long cachedSourceCrc = buffer.getLong();
+            int payloadLength = buffer.getInt();
+            long payloadCrc = buffer.getLong();
+            if (payloadLength != fileSize - HEADER_SIZE || cachedSize != sourceSize) {
+                return null;
+            }
+
+            ByteBuffer payload = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != payloadCrc) {
+                LOGGER.warning("Metadata cache checksum mismatch: " + compiled);
+                return null;
+            }
+
+            boolean rewriteHeader = false;
+            if (cachedMtime != sourceMtime) {
+                // Touched but possibly unchanged; checksum the bytes, no parsing
+                if (crc(Files.readAllBytes(json)) != cachedSourceCrc) {
+                    return null;
+                }
+                rewriteHeader = true;
+            }
+
+            VersionMetadata meta = decode(payload);
+            if (rewriteHeader) {
+                write(compiled, meta, sourceSize, sourceMtime, cachedSourceCrc);
+            }
+            return meta;
+        }
+    }
+
+    private void write(Path target, VersionMetadata meta, long sourceSize, long sourceMtime, long sourceCrc)
+            throws IOException {
+        byte[] payload = encode(meta);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + payload.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(sourceSize);
+        out.writeLong(sourceMtime);
+        out.writeLong(sourceCrc);
+        out.writeInt(payload.length);
+        out.writeLong(crc.getValue());
+        out.write(payload);
+        out.flush();
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] encode(VersionMetadata meta) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, meta.getId());
+        writeString(out, meta.getInheritsFrom());
+        writeString(out, meta.getJarVersion());
+        writeString(out, meta.getMainClass());
+        writeString(out, meta.getAssetIndexId());
+        writeString(out, meta.getAssetIndexUrl());
+        writeString(out, meta.getAssetIndexSha1());
+        writeString(out, meta.getClientUrl());
+        writeString(out, meta.getClientSha1());
+        out.writeLong(meta.getClientSize());
+        out.writeInt(meta.getJavaMajorVersion());
+        out.writeBoolean(meta.isLegacyGameArguments());
+
+        out.writeInt(meta.getLibraries().size());
+        for (VersionMetadata.LibraryEntry lib : meta.getLibraries()) {
+            writeString(out, lib.getName());
+            writeString(out, lib.getPath());
+            writeString(out, lib.getUrl());
+            writeString(out, lib.getSha1());
+            out.writeLong(lib.getSize());
+            out.writeBoolean(lib.isNativeLibrary());
+        }
+
+        writeStrings(out, meta.getJvmArguments());
+        writeStrings(out, meta.getGameArguments());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static VersionMetadata decode(ByteBuffer in) {
+        VersionMetadata meta = new VersionMetadata();
+        meta.setId(readString(in));
+        meta.setInheritsFrom(readString(in));
+        meta.setJarVersion(readString(in));
+        meta.setMainClass(readString(in));
+        meta.setAssetIndexId(readString(in));
+        meta.setAssetIndexUrl(readString(in));
+        meta.setAssetIndexSha1(readString(in));
+        meta.setClientUrl(readString(in));
+        meta.setClientSha1(readString(in));
+        meta.setClientSize(in.getLong());
+        meta.setJavaMajorVersion(in.getInt());
+        meta.setLegacyGameArguments(in.get() != 0);
+
+        int libraryCount = in.getInt();
+        List<VersionMetadata.LibraryEntry> libraries = new ArrayList<>(libraryCount);
+        for (int i = 0; i < libraryCount; i++) {
+            VersionMetadata.LibraryEntry lib = new VersionMetadata.LibraryEntry();
+            lib.setName(readString(in));
+            lib.setPath(readString(in));
+            lib.setUrl(readString(in));
+            lib.setSha1(readString(in));
+            lib.setSize(in.getLong());
+            lib.setNativeLibrary(in.get() != 0);
+            libraries.add(lib);
+        }
+        meta.setLibraries(libraries);
+
+        meta.setJvmArguments(readStrings(in));
+        meta.setGameArguments(readStrings(in));
+        return meta;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(ByteBuffer in) {
+        int count = in.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}
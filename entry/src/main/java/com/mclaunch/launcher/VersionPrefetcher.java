@@ -0,0 +1,265 @@
+package com.mclaunch.launcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Idle-time download of the versions a user is likely to launch next
+ * While the device is idle, charging and on an unmetered network, the
+ * newest release and the versions of all profiles are staged: libraries,
+ * assets and the version JSON are stored as usual, the client jar is kept
+ * aside until a real install promotes it. A pass stops as soon as a
+ * condition no longer holds, its byte budget or the storage budget is used
+ * up, or a foreground install starts; whatever finished is kept for the next
+ * pass.
+ */
+public class VersionPrefetcher {
+    private static final long CHECK_INTERVAL_MS = 1000; // how often a running pass re-checks device conditions
+    private static final long MB = 1024L * 1024L;
+    private static final Logger LOGGER = Logger.getLogger(VersionPrefetcher.class.getName());
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "version-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Device state as reported by the platform
+     */
+    public interface DeviceConditions {
+        boolean isIdle();
+        boolean isCharging();
+        boolean isUnmetered();
+    }
+
+    private final MinecraftLauncher launcher;
+    private final DeviceConditions conditions;
+    private final Supplier<Collection<ProfileManager.UserProfile>> profiles;
+    private ScheduledFuture<?> schedule;
+    private volatile LauncherTask<Boolean> current;
+    // Bumped by cancel(); a pass stops once it differs from the value at its request
+    private final AtomicLong cancels = new AtomicLong();
+
+    public VersionPrefetcher(MinecraftLauncher launcher, DeviceConditions conditions,
+                             Supplier<Collection<ProfileManager.UserProfile>> profiles) {
+        this.launcher = launcher;
+        this.conditions = conditions;
+        this.profiles = profiles;
+    }
+
+    /**
+     * Try a pass every intervalMs; passes whose conditions are not met return at once
+     */
+    public synchronized void start(long intervalMs) {
+        if (schedule == null) {
+            schedule = SCHEDULER.scheduleWithFixedDelay(this::runQuietly, intervalMs, intervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop scheduling and cancel the running pass
+     */
+    public synchronized void stop() {
+        if (schedule != null) {
+            schedule.cancel(false);
+            schedule = null;
+        }
+        cancel();
+    }
+
+    /**
+     * Cancel the running pass and any requested but not yet started; later
+     * passes run normally
+     */
+    public void cancel() {
+        cancels.incrementAndGet();
+        LauncherTask<Boolean> task = current;
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Run one pass now, on the prefetch thread
+     */
+    public CompletableFuture<PrefetchReport> prefetchNow() {
+        long generation = cancels.get();
+        return CompletableFuture.supplyAsync(() -> prefetch(generation), SCHEDULER);
+    }
+
+    private void runQuietly() {
+        try {
+            PrefetchReport report = prefetch(cancels.get());
+            if (!report.getStaged().isEmpty()) {
+                LOGGER.info("Prefetch: " + report);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Prefetch pass failed", e);
+        }
+    }
+
+    private PrefetchReport prefetch(long generation) {
+        PrefetchReport report = new PrefetchReport();
+        if (!conditionsMet()) {
+            report.stopReason = "device busy, on battery or on a metered network";
+            return report;
+        }
+        long budget = launcher.getConfig().getPrefetchBudgetMb() * MB;
+        for (String version : findTargets()) {
+            if (cancels.get() != generation) {
+                report.stopReason = "cancelled";
+                break;
+            }
+            long remaining = Math.min(budget - report.bytes, storageHeadroom());
+            if (remaining <= 0) {
+                report.stopReason = "byte budget used up";
+                break;
+            }
+            String stop = stage(version, remaining, generation, report);
+            if (stop != null) {
+                report.stopReason = stop;
+                break;
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Stage one version, watching conditions and budget while it runs
+     * Returns why the pass has to stop, or null to go on with the next version.
+     */
+    private String stage(String version, long remaining, long generation, PrefetchReport report) {
+        LauncherTask<Boolean> task = launcher.stageVersionAsync(version, remaining);
+        current = task;
+        if (cancels.get() != generation) {
+            // cancel() ran before current was set and could not reach this task
+            task.cancel();
+        }
+        String stop = null;
+        try {
+            while (true) {
+                try {
+                    task.getFuture().get(CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    report.staged.add(version);
+                    break;
+                } catch (TimeoutException e) {
+                    if (cancels.get() != generation) {
+                        stop = "cancelled";
+                    } else if (!conditionsMet()) {
+                        stop = "device conditions changed";
+                    }
+                    if (stop != null) {
+                        task.cancel();
+                    }
+                } catch (CancellationException e) {
+                    return stopReason(stop, task, generation);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        return stopReason(stop, task, generation);
+                    }
+                    LOGGER.warning("Failed to prefetch " + version + ": " + e.getCause().getMessage());
+                    report.failed.add(version);
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.cancel();
+                    return "interrupted";
+                }
+            }
+            return null;
+        } finally {
+            report.bytes += task.getSnapshot().getBytesDone();
+            current = null;
+        }
+    }
+
+    private String stopReason(String stop, LauncherTask<Boolean> task, long generation) {
+        if (stop != null) {
+            return stop;
+        }
+        if (cancels.get() != generation) {
+            return "cancelled";
+        }
+        return task.getTracker().isByteLimitReached() ? "byte budget used up" : "yielded to a foreground install";
+    }
+
+    /**
+     * Newest release first, then the versions profiles are set to; only
+     * versions the manifest knows and that are neither installed nor staged
+     */
+    private List<String> findTargets() {
+        VersionManifest manifest = launcher.getVersionManifest();
+        if (manifest.isManifestStale()) {
+            try {
+                manifest.refreshAsync().join();
+            } catch (RuntimeException e) {
+                LOGGER.warning("Prefetch continues with the cached manifest: " + e.getMessage());
+            }
+        }
+        VersionCatalog catalog = manifest.getCatalog();
+        Set<String> targets = new LinkedHashSet<>();
+        if (catalog.getLatestRelease() != null) {
+            targets.add(catalog.getLatestRelease());
+        }
+        for (ProfileManager.UserProfile profile : profiles.get()) {
+            if (profile.getVersion() != null) {
+                targets.add(profile.getVersion());
+            }
+        }
+        // Mod loader versions are not in the manifest; their base version is installed with them
+        targets.removeIf(version -> catalog.get(version) == null || launcher.isInstalledOrStaged(version));
+        return new ArrayList<>(targets);
+    }
+
+    /**
+     * Room left under the storage budget; prefetching must never push real
+     * versions out
+     */
+    private long storageHeadroom() {
+        return launcher.getConfig().getStorageBudgetMb() * MB - launcher.getStorageLedger().getTotalBytes();
+    }
+
+    private boolean conditionsMet() {
+        return conditions.isIdle() && conditions.isCharging() && conditions.isUnmetered();
+    }
+
+    public static class PrefetchReport {
+        private final List<String> staged = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+        private long bytes;
+        private String stopReason;
+
+        public List<String> getStaged() { return Collections.unmodifiableList(staged); }
+        public List<String> getFailed() { return Collections.unmodifiableList(failed); }
+        public long getBytes() { return bytes; }
+
+        /**
+         * Why the pass ended early, or null if every target was handled
+         */
+        public String getStopReason() { return stopReason; }
+
+        @Override
+        public String toString() {
+            return String.format("staged %s, failed %s, %.1f MB%s", staged, failed, bytes / 1048576.0,
+                    stopReason != null ? ", stopped: " + stopReason : "");
+        }
+    }
+}
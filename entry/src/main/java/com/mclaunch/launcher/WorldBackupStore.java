@@ -0,0 +1,766 @@
+package com.mclaunch.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Incremental, deduplicated snapshots of the worlds in saves/
+ * Files are cut into content-defined chunks (gear rolling hash, 16-256 KB,
+ * 64 KB on average), so an edit inside a region file only changes the
+ * chunks around it. Chunks are stored once under backups/chunks by SHA-1;
+ * a snapshot is a small manifest listing every file's chunks. Files whose
+ * size and modification time match the previous snapshot are not read at
+ * all, so a nightly snapshot costs the changed files' read time and the
+ * changed chunks' bytes. Snapshots and restores hold the world's
+ * session.lock, the lock the game itself takes, and are refused while the
+ * world is open. Games before 1.16 do not lock it, so every world of a game
+ * directory with a running game is refused as well.
+ * Each instance's game directory has its own view, see forProfile; all views
+ * share one chunk store.
+ */
+public class WorldBackupStore {
+    private static final String MINECRAFT_DIR = "/data/storage/el2/base/minecraft";
+    private static final int MAGIC = 0x4D435742; // "MCWB"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SESSION_LOCK = "session.lock";
+    private static final int MIN_CHUNK = 16 * 1024;
+    private static final int AVG_CHUNK = 64 * 1024;
+    private static final int MAX_CHUNK = 256 * 1024;
+    // Normalized chunking: a stricter mask below the average size, a looser one above
+    private static final long MASK_SMALL = 0xFFFFC00000000000L; // 18 bits
+    private static final long MASK_LARGE = 0xFFFC000000000000L; // 14 bits
+    private static final long[] GEAR = gearTable();
+    private static final Logger LOGGER = Logger.getLogger(WorldBackupStore.class.getName());
+    private static final ExecutorService BACKUP_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread thread = new Thread(r, "world-backup");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Path savesDir;
+    private final Path backupDir;
+    private final Path chunksDir;
+    private final Path snapshotsDir;
+    private final Predicate<Path> gameRunning;
+    // Shared by all views: prune must not run while any view stores chunks
+    private final Object storeLock;
+    // Chunks being written by this store, so concurrent files count each once
+    private final Set<String> storing;
+
+    public WorldBackupStore() {
+        this(MINECRAFT_DIR);
+    }
+
+    public WorldBackupStore(String minecraftDir) {
+        this(minecraftDir, gameDir -> false);
+    }
+
+    /**
+     * gameRunning tells whether a game is running in a game directory
+     */
+    public WorldBackupStore(String minecraftDir, Predicate<Path> gameRunning) {
+        this(Paths.get(minecraftDir, "saves"), Paths.get(minecraftDir, "backups"), gameRunning);
+    }
+
+    public WorldBackupStore(Path savesDir, Path backupDir) {
+        this(savesDir, backupDir, gameDir -> false);
+    }
+
+    public WorldBackupStore(Path savesDir, Path backupDir, Predicate<Path> gameRunning) {
+        this(savesDir, backupDir, backupDir.resolve("snapshots"), gameRunning, new Object(),
+                ConcurrentHashMap.newKeySet());
+    }
+
+    private WorldBackupStore(Path savesDir, Path backupDir, Path snapshotsDir, Predicate<Path> gameRunning,
+                             Object storeLock, Set<String> storing) {
+        this.savesDir = savesDir;
+        this.backupDir = backupDir;
+        this.chunksDir = backupDir.resolve("chunks");
+        this.snapshotsDir = snapshotsDir;
+        this.gameRunning = gameRunning;
+        this.storeLock = storeLock;
+        this.storing = storing;
+    }
+
+    /**
+     * View of the worlds in a profile's own game directory; its snapshots are
+     * kept apart from other profiles', its chunks are shared
+     */
+    public WorldBackupStore forProfile(String profileId, Path gameDir) throws IOException {
+        Path profiles = backupDir.resolve("profiles");
+        Path snapshots = profiles.resolve(profileId).normalize();
+        if (!profiles.equals(snapshots.getParent())) {
+            throw new IOException("Invalid profile id: " + profileId);
+        }
+        return new WorldBackupStore(gameDir.resolve("saves"), backupDir, snapshots.resolve("snapshots"),
+                gameRunning, storeLock, storing);
+    }
+
+    /**
+     * World directories under saves/
+     */
+    public List<String> listWorlds() throws IOException {
+        List<String> worlds = new ArrayList<>();
+        if (Files.isDirectory(savesDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(savesDir, Files::isDirectory)) {
+                for (Path dir : stream) {
+                    if (!dir.getFileName().toString().startsWith(".")) {
+                        worlds.add(dir.getFileName().toString());
+                    }
+                }
+            }
+        }
+        Collections.sort(worlds);
+        return worlds;
+    }
+
+    /**
+     * Snapshot every world that is not open in the game; open worlds are
+     * skipped and reported with a null entry
+     */
+    public Map<String, SnapshotReport> snapshotAll() throws IOException {
+        Map<String, SnapshotReport> reports = new HashMap<>();
+        for (String world : listWorlds()) {
+            try {
+                reports.put(world, snapshot(world));
+            } catch (WorldInUseException e) {
+                LOGGER.info("Skipping backup of open world " + world);
+                reports.put(world, null);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Take a snapshot of one world; its files are chunked in parallel
+     */
+    public SnapshotReport snapshot(String world) throws IOException {
+        synchronized (storeLock) {
+            return snapshotLocked(world);
+        }
+    }
+
+    private SnapshotReport snapshotLocked(String world) throws IOException {
+        long start = System.nanoTime();
+        Path worldDir = worldDir(world);
+        if (!Files.isDirectory(worldDir)) {
+            throw new IOException("No such world: " + world);
+        }
+        checkNoGameRunning(world);
+        SnapshotReport report = new SnapshotReport();
+        WorldLock lock = WorldLock.acquire(worldDir, world);
+        try {
+            Map<String, FileEntry> previous = new HashMap<>();
+            List<SnapshotInfo> history = listSnapshots(world);
+            if (!history.isEmpty()) {
+                for (FileEntry entry : readManifest(manifestPath(world, history.get(history.size() - 1).getId()))) {
+                    previous.put(entry.path, entry);
+                }
+            }
+
+            List<Path> files = new ArrayList<>();
+            List<FileEntry> entries = Collections.synchronizedList(new ArrayList<>());
+            Files.walkFileTree(worldDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(worldDir)) {
+                        entries.add(FileEntry.directory(relative(worldDir, dir)));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !file.getFileName().toString().equals(SESSION_LOCK)) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            List<CompletableFuture<Void>> work = new ArrayList<>();
+            for (Path file : files) {
+                work.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        entries.add(snapshotFile(worldDir, file, previous, report));
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, BACKUP_EXECUTOR));
+            }
+            joinAll(work);
+
+            String id = newSnapshotId();
+            writeManifest(manifestPath(world, id), entries);
+            report.snapshotId = id;
+            report.files = files.size();
+        } finally {
+            lock.close();
+        }
+        report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        LOGGER.info("Backed up " + world + ": " + report);
+        return report;
+    }
+
+    private FileEntry snapshotFile(Path worldDir, Path file, Map<String, FileEntry> previous, SnapshotReport report)
+            throws IOException {
+        String path = relative(worldDir, file);
+        long size = Files.size(file);
+        long mtime = Files.getLastModifiedTime(file).toMillis();
+        FileEntry known = previous.get(path);
+        if (known != null && !known.directory && known.size == size && known.mtime == mtime) {
+            report.reusedBytes.addAndGet(size);
+            return known;
+        }
+
+        report.changedFiles.incrementAndGet();
+        FileEntry entry = new FileEntry(path, false, size, mtime);
+        MessageDigest sha1 = newSha1();
+        byte[] buffer = new byte[MAX_CHUNK * 4];
+        int length = 0;
+        boolean eof = false;
+        try (InputStream in = Files.newInputStream(file)) {
+            while (true) {
+                while (!eof && length < buffer.length) {
+                    int read = in.read(buffer, length, buffer.length - length);
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        length += read;
+                    }
+                }
+                int position = 0;
+                while (length - position >= MAX_CHUNK || (eof && position < length)) {
+                    int cut = cutPoint(buffer, position, length - position);
+                    entry.chunks.add(storeChunk(sha1, buffer, position, cut, report));
+                    entry.lengths.add(cut);
+                    position += cut;
+                }
+                System.arraycopy(buffer, position, buffer, 0, length - position);
+                length -= position;
+                if (eof && length == 0) {
+                    break;
+                }
+            }
+        }
+        report.scannedBytes.addAndGet(size);
+        // Record what was read; a file written meanwhile would show up as changed next time
+        entry.size = entry.lengths.stream().mapToLong(Integer::longValue).sum();
+        return entry;
+    }
+
+    /**
+     * FastCDC-style cut point within data[offset, offset + length)
+     */
+    static int cutPoint(byte[] data, int offset, int length) {
+        if (length <= MIN_CHUNK) {
+            return length;
+        }
+        int limit = Math.min(length, MAX_CHUNK);
+        int normal = Math.min(AVG_CHUNK, limit);
+        long fingerprint = 0;
+        int i = MIN_CHUNK;
+        for (; i < normal; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xff];
+            if ((fingerprint & MASK_SMALL) == 0) {
+                return i;
+            }
+        }
+        for (; i < limit; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xff];
+            if ((fingerprint & MASK_LARGE) == 0) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private String storeChunk(MessageDigest sha1, byte[] data, int offset, int length, SnapshotReport report)
+            throws IOException {
+        sha1.update(data, offset, length);
+        String hash = FileHasher.toHex(sha1.digest());
+        Path target = chunkPath(hash);
+        // The claim makes one file store a chunk that several files of this snapshot share
+        if (Files.exists(target) || !storing.add(hash)) {
+            return hash;
+        }
+        try {
+            if (Files.exists(target)) {
+                return hash;
+            }
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    out.write(data, offset, length);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                report.newChunks.incrementAndGet();
+                report.storedBytes.addAndGet(length);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            storing.remove(hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Snapshots of a world, oldest first
+     */
+    public List<SnapshotInfo> listSnapshots(String world) throws IOException {
+        List<SnapshotInfo> snapshots = new ArrayList<>();
+        Path dir = snapshotsDir.resolve(world);
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.snap")) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    String id = name.substring(0, name.length() - ".snap".length());
+                    snapshots.add(new SnapshotInfo(id, parseSnapshotTime(id, file)));
+                }
+            }
+        }
+        snapshots.sort((a, b) -> a.getId().compareTo(b.getId()));
+        return snapshots;
+    }
+
+    /**
+     * Restore the world as it was at a point in time (epoch millis): the
+     * latest snapshot taken at or before it
+     */
+    public void restoreAt(String world, long timeMillis) throws IOException {
+        String chosen = null;
+        for (SnapshotInfo snapshot : listSnapshots(world)) {
+            if (snapshot.getCreatedAt() <= timeMillis) {
+                chosen = snapshot.getId();
+            }
+        }
+        if (chosen == null) {
+            throw new IOException("No snapshot of " + world + " at or before " + new Date(timeMillis));
+        }
+        restore(world, chosen);
+    }
+
+    /**
+     * Replace the world with a snapshot; the current files are only removed
+     * once the snapshot has been rebuilt and verified
+     */
+    public void restore(String world, String snapshotId) throws IOException {
+        synchronized (storeLock) {
+            restoreLocked(world, snapshotId);
+        }
+    }
+
+    private void restoreLocked(String world, String snapshotId) throws IOException {
+        long start = System.nanoTime();
+        List<FileEntry> entries = readManifest(manifestPath(world, snapshotId));
+        Path worldDir = worldDir(world);
+        checkNoGameRunning(world);
+        Files.createDirectories(savesDir);
+        Path staging = Files.createTempDirectory(savesDir, ".restore-" + world + "-");
+        try (WorldLock lock = Files.isDirectory(worldDir) ? WorldLock.acquire(worldDir, world) : null) {
+            for (FileEntry entry : entries) {
+                if (entry.directory) {
+                    Files.createDirectories(staging.resolve(entry.path));
+                }
+            }
+            List<CompletableFuture<Void>> work = new ArrayList<>();
+            for (FileEntry entry : entries) {
+                if (!entry.directory) {
+                    work.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            restoreFile(staging, entry);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, BACKUP_EXECUTOR));
+                }
+            }
+            joinAll(work);
+
+            if (lock != null) {
+                Path replaced = savesDir.resolve(".replaced-" + world + "-" + System.nanoTime());
+                Files.move(worldDir, replaced, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(staging, worldDir, StandardCopyOption.ATOMIC_MOVE);
+                deleteTree(replaced);
+            } else {
+                Files.move(staging, worldDir, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            deleteTree(staging);
+        }
+        LOGGER.info(String.format("Restored %s to snapshot %s (%d entries) in %d ms", world, snapshotId,
+                entries.size(), (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private void restoreFile(Path root, FileEntry entry) throws IOException {
+        Path target = root.resolve(entry.path).normalize();
+        if (!target.startsWith(root)) {
+            throw new IOException("Snapshot entry outside the world: " + entry.path);
+        }
+        Files.createDirectories(target.getParent());
+        MessageDigest sha1 = newSha1();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 1 << 16)) {
+            for (String hash : entry.chunks) {
+                byte[] data = Files.readAllBytes(chunkPath(hash));
+                if (!hash.equals(FileHasher.toHex(sha1.digest(data)))) {
+                    throw new IOException("Corrupt backup chunk " + hash + " in " + entry.path);
+                }
+                out.write(data);
+            }
+        }
+        // Keep the recorded time so the next snapshot sees the file as unchanged
+        Files.setLastModifiedTime(target, FileTime.fromMillis(entry.mtime));
+    }
+
+    /**
+     * Keep the newest snapshots of a world and delete chunks no snapshot of
+     * any world of any profile refers to any more
+     * Returns the bytes freed.
+     */
+    public long prune(String world, int keep) throws IOException {
+        synchronized (storeLock) {
+            return pruneLocked(world, keep);
+        }
+    }
+
+    private long pruneLocked(String world, int keep) throws IOException {
+        List<SnapshotInfo> snapshots = listSnapshots(world);
+        for (int i = 0; i < snapshots.size() - Math.max(1, keep); i++) {
+            Files.deleteIfExists(manifestPath(world, snapshots.get(i).getId()));
+        }
+
+        Set<String> referenced = new HashSet<>();
+        if (Files.isDirectory(backupDir)) {
+            Files.walkFileTree(backupDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.equals(chunksDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (file.getFileName().toString().endsWith(".snap")) {
+                        for (FileEntry entry : readManifest(file)) {
+                            referenced.addAll(entry.chunks);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        AtomicLong freed = new AtomicLong();
+        if (Files.isDirectory(chunksDir)) {
+            Files.walkFileTree(chunksDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!referenced.contains(file.getFileName().toString())) {
+                        freed.addAndGet(attrs.size());
+                        Files.delete(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return freed.get();
+    }
+
+    private void checkNoGameRunning(String world) throws WorldInUseException {
+        if (gameRunning.test(savesDir.toAbsolutePath().normalize().getParent())) {
+            throw new WorldInUseException(world);
+        }
+    }
+
+    private Path worldDir(String world) throws IOException {
+        Path dir = savesDir.resolve(world).normalize();
+        if (!dir.getParent().equals(savesDir.normalize())) {
+            throw new IOException("Invalid world name: " + world);
+        }
+        return dir;
+    }
+
+    private Path manifestPath(String world, String id) {
+        return snapshotsDir.resolve(world).resolve(id + ".snap");
+    }
+
+    private Path chunkPath(String hash) {
+        return chunksDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String newSnapshotId() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date());
+    }
+
+    private static long parseSnapshotTime(String id, Path file) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(id).getTime();
+        } catch (ParseException e) {
+            return Files.getLastModifiedTime(file).toMillis();
+        }
+    }
+
+    private static void writeManifest(Path target, List<FileEntry> entries) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (FileEntry entry : entries) {
+                out.writeUTF(entry.path);
+                out.writeBoolean(entry.directory);
+                out.writeLong(entry.size);
+                out.writeLong(entry.mtime);
+                out.writeInt(entry.chunks.size());
+                for (int i = 0; i < entry.chunks.size(); i++) {
+                    out.writeUTF(entry.chunks.get(i));
+                    out.writeInt(entry.lengths.get(i));
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<FileEntry> readManifest(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("No such snapshot: " + file.getFileName());
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format: " + file);
+            }
+            int count = in.readInt();
+            List<FileEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                FileEntry entry = new FileEntry(in.readUTF(), in.readBoolean(), in.readLong(), in.readLong());
+                int chunks = in.readInt();
+                for (int c = 0; c < chunks; c++) {
+                    entry.chunks.add(in.readUTF());
+                    entry.lengths.add(in.readInt());
+                }
+                entries.add(entry);
+            }
+            return entries;
+        }
+    }
+
+    private static String relative(Path root, Path path) {
+        return root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    private static void joinAll(List<CompletableFuture<Void>> work) throws IOException {
+        try {
+            CompletableFuture.allOf(work.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long[] gearTable() {
+        // Fixed seed: cut points, and so deduplication, must not change between runs
+        long[] table = new long[256];
+        long state = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < table.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = z ^ (z >>> 31);
+        }
+        return table;
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * The world's session.lock, held exactly like the game holds it
+     */
+    private static class WorldLock implements AutoCloseable {
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private WorldLock(FileChannel channel, FileLock lock) {
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        static WorldLock acquire(Path worldDir, String world) throws IOException {
+            FileChannel channel = FileChannel.open(worldDir.resolve(SESSION_LOCK),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                channel.close();
+                throw new WorldInUseException(world);
+            }
+            return new WorldLock(channel, lock);
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.release();
+            channel.close();
+        }
+    }
+
+    /**
+     * The world is open in a running game
+     */
+    public static class WorldInUseException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public WorldInUseException(String world) {
+            super("World is open in a running game: " + world);
+        }
+    }
+
+    private static class FileEntry {
+        final String path;
+        final boolean directory;
+        long size;
+        final long mtime;
+        final List<String> chunks = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+
+        FileEntry(String path, boolean directory, long size, long mtime) {
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.mtime = mtime;
+        }
+
+        static FileEntry directory(String path) {
+            return new FileEntry(path, true, 0, 0);
+        }
+    }
+
+    public static class SnapshotInfo {
+        private final String id;
+        private final long createdAt;
+
+        SnapshotInfo(String id, long createdAt) {
+            this.id = id;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * UTC timestamp, yyyyMMdd-HHmmss-SSS; ids sort by time
+         */
+        public String getId() { return id; }
+        public long getCreatedAt() { return createdAt; }
+    }
+
+    public static class SnapshotReport {
+        private String snapshotId;
+        private int files;
+        private final AtomicLong changedFiles = new AtomicLong();
+        private final AtomicLong scannedBytes = new AtomicLong();
+        private final AtomicLong reusedBytes = new AtomicLong();
+        private final AtomicLong newChunks = new AtomicLong();
+        private final AtomicLong storedBytes = new AtomicLong();
+        private long elapsedMillis;
+
+        public String getSnapshotId() { return snapshotId; }
+        public int getFiles() { return files; }
+        public long getChangedFiles() { return changedFiles.get(); }
+
+        /**
+         * Bytes read and chunked, i.e. of changed files
+         */
+        public long getScannedBytes() { return scannedBytes.get(); }
+
+        /**
+         * Bytes of unchanged files taken over from the previous snapshot
+         */
+        public long getReusedBytes() { return reusedBytes.get(); }
+        public long getNewChunks() { return newChunks.get(); }
+
+        /**
+         * Bytes this snapshot added to the store
+         */
+        public long getStoredBytes() { return storedBytes.get(); }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d files (%d changed), %.1f MB read, %.1f MB unchanged, %d new chunks "
+                            + "(%.1f MB) in %d ms", snapshotId, files, changedFiles.get(),
+                    scannedBytes.get() / 1048576.0, reusedBytes.get() / 1048576.0, newChunks.get(),
+                    storedBytes.get() / 1048576.0, elapsedMillis);
+        }
+    }
+}
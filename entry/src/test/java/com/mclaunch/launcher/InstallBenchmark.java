@@ -0,0 +1,195 @@
+package com.mclaunch.launcher;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end install benchmark against a local SyntheticCdn
+ * Installs a generated version into a fresh game directory per run and
+ * reports wall time, throughput and per-file latency percentiles, so install
+ * performance can be measured on any Linux box without network access.
+ *
+ * Usage: InstallBenchmark [--runs N] [--objects N] [--versions N]
+ *        [--libraries N] [--client-mb N] [--latency MS] [--jitter MS]
+ *        [--bandwidth-mbit N] [--error-rate P] [--drop-rate P] [--seed N]
+ *        [--home DIR] [--keep]
+ */
+public class InstallBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        SyntheticCdn.Options options = new SyntheticCdn.Options();
+        int runs = 3;
+        Path home = null;
+        boolean keep = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--runs": runs = Integer.parseInt(args[++i]); break;
+                case "--objects": options.setAssetObjects(Integer.parseInt(args[++i])); break;
+                case "--versions": options.setVersions(Integer.parseInt(args[++i])); break;
+                case "--libraries": options.setLibrariesPerVersion(Integer.parseInt(args[++i])); break;
+                case "--client-mb": options.setClientJarBytes(Integer.parseInt(args[++i]) * 1024 * 1024); break;
+                case "--latency": options.setLatencyMillis(Long.parseLong(args[++i])); break;
+                case "--jitter": options.setJitterMillis(Long.parseLong(args[++i])); break;
+                case "--bandwidth-mbit":
+                    options.setBandwidthBytesPerSecond(Long.parseLong(args[++i]) * 1_000_000L / 8);
+                    break;
+                case "--error-rate": options.setErrorRate(Double.parseDouble(args[++i])); break;
+                case "--drop-rate": options.setDropRate(Double.parseDouble(args[++i])); break;
+                case "--seed": options.setSeed(Long.parseLong(args[++i])); break;
+                case "--home": home = Paths.get(args[++i]); break;
+                case "--keep": keep = true; break;
+                default:
+                    System.err.println("Unknown argument: " + arg);
+                    System.exit(2);
+            }
+        }
+
+        try (SyntheticCdn cdn = new SyntheticCdn(options)) {
+            String version = cdn.getVersionIds().get(0);
+            System.out.printf("Synthetic CDN: %d objects, %d libraries/version, %d MB client, latency %d+%d ms, "
+                            + "bandwidth %s, errors %.1f%%, drops %.1f%%%n",
+                    options.getAssetObjects(), options.getLibrariesPerVersion(), options.getClientJarBytes() >> 20,
+                    options.getLatencyMillis(), options.getJitterMillis(),
+                    options.getBandwidthBytesPerSecond() > 0
+                            ? options.getBandwidthBytesPerSecond() * 8 / 1_000_000 + " Mbit/s" : "unlimited",
+                    options.getErrorRate() * 100, options.getDropRate() * 100);
+
+            List<RunResult> results = new ArrayList<>();
+            for (int run = 1; run <= runs; run++) {
+                Path dir = home != null ? home.resolve("run-" + run) : Files.createTempDirectory("mc-bench-");
+                deleteTree(dir);
+                cdn.resetFaults();
+                RunResult result = runOnce(cdn, version, dir);
+                results.add(result);
+                System.out.println("run " + run + ": " + result);
+                if (!keep) {
+                    deleteTree(dir);
+                }
+            }
+            System.out.println(summarize(results));
+        }
+    }
+
+    private static RunResult runOnce(SyntheticCdn cdn, String version, Path dir) {
+        MinecraftLauncher launcher = new MinecraftLauncher(dir.toString(), cdn.getManifestUrl(),
+                cdn.getResourcesUrl());
+        RunResult result = new RunResult();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong retries = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        List<Long> latencies = new ArrayList<>();
+        launcher.getAssetManager().setDownloadListener((url, size, elapsedNanos, attempts, success) -> {
+            bytes.addAndGet(size);
+            retries.addAndGet(attempts - 1);
+            if (!success) {
+                failures.incrementAndGet();
+            }
+            synchronized (latencies) {
+                latencies.add(elapsedNanos);
+            }
+        });
+
+        long requestsBefore = cdn.getRequests();
+        long errorsBefore = cdn.getInjectedErrors();
+        long dropsBefore = cdn.getDroppedConnections();
+        long start = System.nanoTime();
+        result.installed = launcher.installVersion(version);
+        result.wallMillis = (System.nanoTime() - start) / 1_000_000;
+        result.verified = result.installed && launcher.verifyAndRepair(version).isHealthy();
+
+        result.bytes = bytes.get();
+        result.retries = retries.get();
+        result.failures = failures.get();
+        result.requests = cdn.getRequests() - requestsBefore;
+        result.injectedErrors = cdn.getInjectedErrors() - errorsBefore;
+        result.droppedConnections = cdn.getDroppedConnections() - dropsBefore;
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        }
+        Arrays.sort(sorted);
+        result.files = sorted.length;
+        result.p50Millis = percentile(sorted, 0.50);
+        result.p90Millis = percentile(sorted, 0.90);
+        result.p99Millis = percentile(sorted, 0.99);
+        result.maxMillis = sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0;
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private static String summarize(List<RunResult> results) {
+        double[] throughput = results.stream().mapToDouble(RunResult::megabytesPerSecond).sorted().toArray();
+        double[] p99 = results.stream().mapToDouble(r -> r.p99Millis).sorted().toArray();
+        long ok = results.stream().filter(r -> r.installed && r.verified).count();
+        return String.format("summary: %d/%d runs installed and verified, median %.1f MB/s, median p99 %.1f ms",
+                ok, results.size(), throughput[throughput.length / 2], p99[p99.length / 2]);
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static class RunResult {
+        boolean installed;
+        boolean verified;
+        long wallMillis;
+        long bytes;
+        long files;
+        long retries;
+        long failures;
+        long requests;
+        long injectedErrors;
+        long droppedConnections;
+        double p50Millis;
+        double p90Millis;
+        double p99Millis;
+        double maxMillis;
+
+        double megabytesPerSecond() {
+            return wallMillis > 0 ? bytes / 1048576.0 / (wallMillis / 1000.0) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s in %d ms, %d files, %.1f MB, %.1f MB/s, %.0f files/s, "
+                            + "latency p50 %.1f / p90 %.1f / p99 %.1f / max %.1f ms, %d requests, "
+                            + "%d retries (%d injected errors, %d drops), %d failed%s",
+                    installed ? "installed" : "FAILED", wallMillis, files, bytes / 1048576.0, megabytesPerSecond(),
+                    wallMillis > 0 ? files * 1000.0 / wallMillis : 0, p50Millis, p90Millis, p99Millis, maxMillis,
+                    requests, retries, injectedErrors, droppedConnections, failures,
+                    verified ? ", verified" : installed ? ", VERIFY FAILED" : "");
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package com.mclaunch.launcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Local stand-in for the Mojang download endpoints
+ * Serves a generated version manifest, version JSONs, one asset index with a
+ * configurable number of objects, libraries and client jars over loopback
+ * HTTP, with injected latency, an aggregate bandwidth cap, server errors and
+ * connections dropped mid-body. File contents are generated from a seed on
+ * every request instead of being held in memory, and every fault decision
+ * depends only on the seed, the path and the attempt number, so runs are
+ * reproducible regardless of request ordering. Client jars are real zips,
+ * held in memory, whose entries mostly carry over from one version to the
+ * next; single byte ranges are served as real CDNs do.
+ */
+public class SyntheticCdn implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(SyntheticCdn.class.getName());
+    private static final String MANIFEST_PATH = "/mc/game/version_manifest.json";
+    private static final String INDEX_ID = "synthetic";
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final long ENTRY_TIME = 1704067200000L; // 2024-01-01, fixed so unchanged entries stay identical
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String baseUrl;
+    private final Map<String, Artifact> artifacts = new HashMap<>();
+    private final Map<String, byte[]> documents = new HashMap<>();
+    private final Map<String, byte[]> gzipDocuments = new HashMap<>();
+    private final Map<String, byte[]> binaries = new HashMap<>();
+    private final List<String> versionIds = new ArrayList<>();
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private final Object bandwidthLock = new Object();
+    private long nextFreeNanos;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong droppedConnections = new AtomicLong();
+
+    /**
+     * Generate the content and start serving on an ephemeral loopback port
+     */
+    public SyntheticCdn(Options options) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.port), 1024);
+        this.baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        long start = System.currentTimeMillis();
+        generate();
+        LOGGER.info("Synthetic CDN generated " + artifacts.size() + " files in "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        this.executor = Executors.newFixedThreadPool(options.serverThreads, r -> {
+            Thread thread = new Thread(r, "synthetic-cdn");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getManifestUrl() {
+        return baseUrl + MANIFEST_PATH;
+    }
+
+    /**
+     * Base URL for asset objects (&lt;hh&gt;/&lt;hash&gt; is appended)
+     */
+    public String getResourcesUrl() {
+        return baseUrl + "/objects/";
+    }
+
+    public List<String> getVersionIds() {
+        return new ArrayList<>(versionIds);
+    }
+
+    public int getAssetObjectCount() {
+        return options.assetObjects;
+    }
+
+    public long getRequests() { return requests.get(); }
+    public long getBytesServed() { return bytesServed.get(); }
+    public long getInjectedErrors() { return injectedErrors.get(); }
+    public long getDroppedConnections() { return droppedConnections.get(); }
+
+    /**
+     * Forget per-path attempt counts, so the next run sees the same faults
+     */
+    public void resetFaults() {
+        attempts.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void generate() throws IOException {
+        long seed = options.seed;
+
+        // Asset objects: content-addressed like the real resources endpoint
+        StringBuilder index = new StringBuilder("{\"objects\":{");
+        long totalSize = 0;
+        for (int i = 0; i < options.assetObjects; i++) {
+            long objectSeed = mix(seed, 0x0B1EC7L, i);
+            int size = sizeBetween(objectSeed, options.minObjectBytes, options.maxObjectBytes);
+            String hash = sha1(objectSeed, size);
+            artifacts.put("/objects/" + hash.substring(0, 2) + "/" + hash, new Artifact(objectSeed, size));
+            if (i > 0) {
+                index.append(',');
+            }
+            index.append("\"minecraft/synthetic/object").append(i).append(".bin\":{\"hash\":\"").append(hash)
+                    .append("\",\"size\":").append(size).append('}');
+            totalSize += size;
+        }
+        index.append("}}");
+        byte[] indexBytes = index.toString().getBytes(StandardCharsets.UTF_8);
+        String indexPath = "/indexes/" + INDEX_ID + ".json";
+        addDocument(indexPath, indexBytes);
+
+        // Libraries: versions share most of them, as real releases do
+        int libraryPool = options.librariesPerVersion + options.versions * Math.max(1, options.librariesPerVersion / 8);
+        List<String> libraryJson = new ArrayList<>(libraryPool);
+        for (int i = 0; i < libraryPool; i++) {
+            long librarySeed = mix(seed, 0x11B7L, i);
+            int size = sizeBetween(librarySeed, options.minLibraryBytes, options.maxLibraryBytes);
+            String hash = sha1(librarySeed, size);
+            String path = "com/synthetic/lib" + i + "/1.0/lib" + i + "-1.0.jar";
+            artifacts.put("/libraries/" + path, new Artifact(librarySeed, size));
+            libraryJson.add("{\"name\":\"com.synthetic:lib" + i + ":1.0\",\"downloads\":{\"artifact\":{\"path\":\""
+                    + path + "\",\"url\":\"" + baseUrl + "/libraries/" + path + "\",\"sha1\":\"" + hash
+                    + "\",\"size\":" + size + "}}}");
+        }
+
+        StringBuilder manifest = new StringBuilder("{\"latest\":{\"release\":\"synthetic-" + options.versions
+                + "\",\"snapshot\":\"synthetic-" + options.versions + "\"},\"versions\":[");
+        for (int v = options.versions; v >= 1; v--) {
+            String id = "synthetic-" + v;
+            versionIds.add(id);
+            byte[] clientJar = clientJar(seed, v);
+            String clientHash = sha1(clientJar);
+            binaries.put("/client/" + id + ".jar", clientJar);
+
+            StringBuilder version = new StringBuilder("{\"id\":\"").append(id)
+                    .append("\",\"type\":\"release\",\"mainClass\":\"net.minecraft.client.main.Main\"")
+                    .append(",\"assetIndex\":{\"id\":\"").append(INDEX_ID).append("\",\"sha1\":\"")
+                    .append(sha1(indexBytes)).append("\",\"size\":").append(indexBytes.length)
+                    .append(",\"totalSize\":").append(totalSize).append(",\"url\":\"").append(baseUrl)
+                    .append(indexPath).append("\"},\"assets\":\"").append(INDEX_ID).append('"')
+                    .append(",\"downloads\":{\"client\":{\"sha1\":\"").append(clientHash).append("\",\"size\":")
+                    .append(clientJar.length).append(",\"url\":\"").append(baseUrl).append("/client/")
+                    .append(id).append(".jar\"}},\"libraries\":[");
+            int first = (v - 1) * Math.max(1, options.librariesPerVersion / 8);
+            for (int i = 0; i < options.librariesPerVersion; i++) {
+                if (i > 0) {
+                    version.append(',');
+                }
+                version.append(libraryJson.get(first + i));
+            }
+            version.append("]}");
+            String versionPath = "/v1/packages/" + id + ".json";
+            addDocument(versionPath, version.toString().getBytes(StandardCharsets.UTF_8));
+
+            if (v < options.versions) {
+                manifest.append(',');
+            }
+            manifest.append("{\"id\":\"").append(id).append("\",\"type\":\"release\",\"url\":\"").append(baseUrl)
+                    .append(versionPath).append("\",\"releaseTime\":\"2024-01-")
+                    .append(String.format("%02d", Math.min(28, v))).append("T00:00:00+00:00\"}");
+        }
+        manifest.append("]}");
+        addDocument(MANIFEST_PATH, manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Client jar of version v: in every version after the first, each entry
+     * changes with probability clientJarChangeRate, like a patch release
+     */
+    private byte[] clientJar(long seed, int v) throws IOException {
+        int entries = Math.max(1, options.clientJarEntries);
+        int averageSize = Math.max(1, options.clientJarBytes / entries);
+        ByteArrayOutputStream jar = new ByteArrayOutputStream(options.clientJarBytes + entries * 128);
+        try (ZipOutputStream out = new ZipOutputStream(jar)) {
+            for (int i = 0; i < entries; i++) {
+                int revision = 0;
+                for (int k = 2; k <= v; k++) {
+                    if (chance(mix(seed, 0xC4A6EL + i, k), 3) < options.clientJarChangeRate) {
+                        revision = k;
+                    }
+                }
+                long entrySeed = mix(seed, 0xC1A55L + i, revision);
+                byte[] data = new byte[sizeBetween(entrySeed, averageSize / 2, averageSize * 3 / 2)];
+                new ContentStream(entrySeed).fill(data, data.length);
+                for (int b = 0; b < data.length; b++) {
+                    // Narrow the alphabet so entries deflate roughly like class files
+                    data[b] = (byte) ('0' + (data[b] & 0x3F));
+                }
+                ZipEntry entry = new ZipEntry("net/minecraft/synthetic/C" + i + ".class");
+                entry.setTime(ENTRY_TIME);
+                // Sizes up front keep data descriptors out, as in release jars
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                entry.setCrc(crc.getValue());
+                entry.setSize(data.length);
+                entry.setCompressedSize(deflatedSize(data));
+                out.putNextEntry(entry);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return jar.toByteArray();
+    }
+
+    private static long deflatedSize(byte[] data) {
+        // Same settings as ZipOutputStream, which checks the size it produces against this one
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[CHUNK_SIZE];
+            while (!deflater.finished()) {
+                deflater.deflate(buffer);
+            }
+            return deflater.getBytesWritten();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void addDocument(String path, byte[] body) throws IOException {
+        documents.put(path, body);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        gzipDocuments.put(path, compressed.toByteArray());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            int attempt = attempts.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            long decision = mix(options.seed, path.hashCode(), attempt);
+
+            long delay = options.latencyMillis
+                    + (options.jitterMillis > 0 ? Math.floorMod(decision >>> 8, options.jitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (chance(decision, 1) < options.errorRate) {
+                injectedErrors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            byte[] document = binaries.get(path);
+            Artifact artifact = document == null ? artifacts.get(path) : null;
+            if (document == null && artifact == null) {
+                String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                boolean gzip = encoding != null && encoding.contains("gzip");
+                document = (gzip ? gzipDocuments : documents).get(path);
+                if (document == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (gzip) {
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+            }
+
+            long size = document != null ? document.length : artifact.size;
+            long[] range = artifact != null || binaries.containsKey(path)
+                    ? parseRange(exchange.getRequestHeaders().getFirst("Range"), size) : null;
+            long from = range != null ? range[0] : 0;
+            long length = range != null ? range[1] - range[0] + 1 : size;
+            boolean drop = chance(decision, 2) < options.dropRate;
+            long limit = drop ? length / 2 : length;
+            if (range != null) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+            }
+            exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+            OutputStream out = exchange.getResponseBody();
+            if (document != null) {
+                writeThrottled(out, document, (int) from, (int) limit);
+            } else {
+                ContentStream content = new ContentStream(artifact.seed);
+                byte[] chunk = new byte[CHUNK_SIZE];
+                // Generated content is sequential: produce and drop everything before the range
+                for (long skipped = 0; skipped < from; ) {
+                    int n = (int) Math.min(chunk.length, from - skipped);
+                    content.fill(chunk, n);
+                    skipped += n;
+                }
+                long written = 0;
+                while (written < limit) {
+                    int n = (int) Math.min(chunk.length, limit - written);
+                    content.fill(chunk, n);
+                    writeThrottled(out, chunk, 0, n);
+                    written += n;
+                }
+            }
+            if (drop) {
+                // Closing short of Content-Length aborts the connection
+                droppedConnections.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                exchange.close();
+            } catch (RuntimeException e) {
+                // Expected for dropped connections
+            }
+        }
+    }
+
+    /**
+     * First and last byte of a single-range request, or null to send the
+     * whole file (no, multiple or unsatisfiable ranges, or ranges disabled)
+     */
+    private long[] parseRange(String header, long size) {
+        if (!options.rangeRequests || header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        try {
+            long first;
+            long last;
+            if (dash == 0) {
+                first = Math.max(0, size - Long.parseLong(spec.substring(1)));
+                last = size - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1 ? size - 1 : Math.min(size - 1, Long.parseLong(spec.substring(dash + 1)));
+            }
+            return first <= last ? new long[] {first, last} : null;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private void writeThrottled(OutputStream out, byte[] data, int from, int length)
+            throws IOException, InterruptedException {
+        for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+            int n = Math.min(CHUNK_SIZE, length - offset);
+            pace(n);
+            out.write(data, from + offset, n);
+            bytesServed.addAndGet(n);
+        }
+    }
+
+    /**
+     * Shared bandwidth cap: every chunk reserves its slot on one timeline
+     * and waits until the slot has passed
+     */
+    private void pace(int bytes) throws InterruptedException {
+        if (options.bandwidthBytesPerSecond <= 0) {
+            return;
+        }
+        long due;
+        synchronized (bandwidthLock) {
+            long now = System.nanoTime();
+            nextFreeNanos = Math.max(now, nextFreeNanos) + bytes * 1_000_000_000L / options.bandwidthBytesPerSecond;
+            due = nextFreeNanos;
+        }
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private static int sizeBetween(long seed, int min, int max) {
+        return max <= min ? min : min + (int) Math.floorMod(seed, (long) (max - min + 1));
+    }
+
+    private static double chance(long decision, int salt) {
+        return (mix(decision, salt, 0) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * SplitMix64 finalizer over the combined inputs
+     */
+    static long mix(long a, long b, long c) {
+        long z = a * 0x9E3779B97F4A7C15L + b * 0xBF58476D1CE4E5B9L + c * 0x94D049BB133111EBL;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String sha1(long seed, int size) {
+        MessageDigest digest = FileHasher.newDigest("SHA-1");
+        ContentStream content = new ContentStream(seed);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int remaining = size; remaining > 0; ) {
+            int n = Math.min(chunk.length, remaining);
+            content.fill(chunk, n);
+            digest.update(chunk, 0, n);
+            remaining -= n;
+        }
+        return FileHasher.toHex(digest.digest());
+    }
+
+    private static String sha1(byte[] data) {
+        MessageDigest digest = FileHasher.newDigest("SHA-1");
+        return FileHasher.toHex(digest.digest(data));
+    }
+
+    /**
+     * Deterministic pseudo-random bytes of one file
+     */
+    private static final class ContentStream {
+        private long state;
+
+        ContentStream(long seed) {
+            this.state = seed;
+        }
+
+        void fill(byte[] buffer, int length) {
+            for (int i = 0; i < length; i += 8) {
+                state += 0x9E3779B97F4A7C15L;
+                long value = mix(state, 0, 0);
+                for (int b = 0; b < 8 && i + b < length; b++) {
+                    buffer[i + b] = (byte) (value >>> (b * 8));
+                }
+            }
+        }
+    }
+
+    private static final class Artifact {
+        final long seed;
+        final int size;
+
+        Artifact(long seed, int size) {
+            this.seed = seed;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Shape of the generated content and the faults to inject
+     */
+    public static class Options {
+        private int port;
+        private int versions = 3;
+        private int assetObjects = 20000;
+        private int minObjectBytes = 512;
+        private int maxObjectBytes = 32 * 1024;
+        private int librariesPerVersion = 40;
+        private int minLibraryBytes = 16 * 1024;
+        private int maxLibraryBytes = 512 * 1024;
+        private int clientJarBytes = 8 * 1024 * 1024;
+        private int clientJarEntries = 2000;
+        private double clientJarChangeRate = 0.05; // share of client jar entries that change per version
+        private boolean rangeRequests = true;
+        private long latencyMillis;
+        private long jitterMillis;
+        private long bandwidthBytesPerSecond; // 0 = unlimited
+        private double errorRate; // share of requests answered with 503
+        private double dropRate; // share of responses cut off mid-body
+        private long seed = 42;
+        private int serverThreads = 64;
+
+        public int getPort() { return port; }
+        public void setPort(int port) { this.port = port; }
+
+        public int getVersions() { return versions; }
+        public void setVersions(int versions) { this.versions = Math.max(1, versions); }
+
+        public int getAssetObjects() { return assetObjects; }
+        public void setAssetObjects(int assetObjects) { this.assetObjects = assetObjects; }
+
+        public int getMinObjectBytes() { return minObjectBytes; }
+        public void setMinObjectBytes(int minObjectBytes) { this.minObjectBytes = minObjectBytes; }
+
+        public int getMaxObjectBytes() { return maxObjectBytes; }
+        public void setMaxObjectBytes(int maxObjectBytes) { this.maxObjectBytes = maxObjectBytes; }
+
+        public int getLibrariesPerVersion() { return librariesPerVersion; }
+        public void setLibrariesPerVersion(int librariesPerVersion) { this.librariesPerVersion = librariesPerVersion; }
+
+        public int getMinLibraryBytes() { return minLibraryBytes; }
+        public void setMinLibraryBytes(int minLibraryBytes) { this.minLibraryBytes = minLibraryBytes; }
+
+        public int getMaxLibraryBytes() { return maxLibraryBytes; }
+        public void setMaxLibraryBytes(int maxLibraryBytes) { this.maxLibraryBytes = maxLibraryBytes; }
+
+        public int getClientJarBytes() { return clientJarBytes; }
+        public void setClientJarBytes(int clientJarBytes) { this.clientJarBytes = clientJarBytes; }
+
+        public int getClientJarEntries() { return clientJarEntries; }
+        public void setClientJarEntries(int clientJarEntries) { this.clientJarEntries = clientJarEntries; }
+
+        public double getClientJarChangeRate() { return clientJarChangeRate; }
+        public void setClientJarChangeRate(double clientJarChangeRate) { this.clientJarChangeRate = clientJarChangeRate; }
+
+        public boolean isRangeRequests() { return rangeRequests; }
+        public void setRangeRequests(boolean rangeRequests) { this.rangeRequests = rangeRequests; }
+
+        public long getLatencyMillis() { return latencyMillis; }
+        public void setLatencyMillis(long latencyMillis) { this.latencyMillis = latencyMillis; }
+
+        public long getJitterMillis() { return jitterMillis; }
+        public void setJitterMillis(long jitterMillis) { this.jitterMillis = jitterMillis; }
+
+        public long getBandwidthBytesPerSecond() { return bandwidthBytesPerSecond; }
+        public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) { this.bandwidthBytesPerSecond = bandwidthBytesPerSecond; }
+
+        public double getErrorRate() { return errorRate; }
+        public void setErrorRate(double errorRate) { this.errorRate = errorRate; }
+
+        public double getDropRate() { return dropRate; }
+        public void setDropRate(double dropRate) { this.dropRate = dropRate; }
+
+        public long getSeed() { return seed; }
+        public void setSeed(long seed) { this.seed = seed; }
+
+        public int getServerThreads() { return serverThreads; }
+        public void setServerThreads(int serverThreads) { this.serverThreads = Math.max(1, serverThreads); }
+    }
+}